@@ -0,0 +1,215 @@
+package code;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * Anytime Repairing A* (ARA*). A series of weighted A* searches, ordered by deaths plus weight times
+ * heuristic, the weight shrinking after every search. The first searches find a solution quickly, the later
+ * ones improve it, and every improvement is passed to the SolutionListener of the options right away.
+ * <p>
+ * Searches reuse what the ones before them found. Within a search every state is expanded at most once: a
+ * cheaper path to a state expanded earlier in the same search is set aside (the inconsistent states) and only
+ * queued again by the next search, which also reorders the open list for its weight. A search with a weight
+ * over 1 ends when the best solution found is no more expensive than the best open node.
+ * <p>
+ * Our heuristics count actions, not deaths, so they may overestimate and cannot prove a solution the best one.
+ * Only the path cost can: a node whose deaths and kills are no lower than those of the best solution found
+ * cannot lead to a cheaper one and is dropped, and the search with weight 1 runs until no other node is left.
+ * ARA* stops once no open or set aside node is cheaper than the best solution found, or when the budget runs
+ * out, in which case it returns the best solution found so far together with the limit it ran into.
+ */
+
+public class ARAStar {
+
+    private final Matrix _problem;
+    private final int _heuristicNum;
+    private final float _weightStep;
+    private final SolutionListener _listener;
+    private final SearchMeter _meter;
+
+    /**
+     * weight: the heuristic weight of the current search, never below 1.
+     * best: the cheapest node known for every state reached. Nodes in open or inconsistent that are not the
+     * best node of their state are stale and skipped.
+     * open: nodes to expand in the current search, ordered for its weight.
+     * closed: states expanded in the current search.
+     * inconsistent: nodes of closed states that got cheaper, queued by the next search.
+     * incumbent: cheapest goal node found so far.
+     */
+
+    private float _weight;
+    private final HashMap<MatrixState, Node<MatrixState, MatrixOperator>> _best = new HashMap<>();
+    private PriorityQueue<Node<MatrixState, MatrixOperator>> _open;
+    private final HashSet<MatrixState> _closed = new HashSet<>();
+    private final ArrayList<Node<MatrixState, MatrixOperator>> _inconsistent = new ArrayList<>();
+    private Node<MatrixState, MatrixOperator> _incumbent;
+
+    /**
+     * @param heuristicNum 1 or 2, for Matrix.ASHeuristic1 or Matrix.ASHeuristic2
+     */
+    public ARAStar(Matrix problem, int heuristicNum, SearchOptions options) {
+        _problem = problem;
+        _heuristicNum = heuristicNum;
+        _weight = Math.max(1, options.getAraWeight());
+        _weightStep = options.getAraWeightStep();
+        _listener = options.getSolutionListener();
+        _meter = new SearchMeter(options.getBudget());
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * @return the cheapest goal node found, with the status SOLVED once no cheaper one is left, FAILED if there
+     * is no goal, or the budget limit that stopped the search
+     */
+    public SearchResult<MatrixState, MatrixOperator> search(Node<MatrixState, MatrixOperator> root) throws IOException, ClassNotFoundException {
+        root.setHeuristic(Search.asHeuristic(_problem, root.getState(), _heuristicNum));
+        _best.put(root.getState(), root);
+        _open = new PriorityQueue<>(byWeightedCost(_weight));
+        _open.add(root);
+
+        while (true) {
+            Node<MatrixState, MatrixOperator> previous = _incumbent;
+            SearchStatus stop = improvePath();
+
+            boolean proven = proven();
+            if (_incumbent != previous && _listener != null) {
+                _listener.solutionFound(_incumbent, _meter.getExpandedNodes(), proven ? 1 : bound());
+            }
+
+            if (stop != null) return _meter.result(stop, _incumbent);
+            if (proven) return _meter.result(_incumbent != null ? SearchStatus.SOLVED : SearchStatus.FAILED, _incumbent);
+
+            _weight = Math.max(1, _weight - _weightStep);
+            reorder();
+        }
+    }
+
+    /**
+     * One weighted A* search, which ends once the incumbent is no more expensive than the best open node, or
+     * with weight 1 once no open node is cheaper than the incumbent.
+     *
+     * @return null, or the budget limit the search ran into
+     */
+    private SearchStatus improvePath() throws IOException, ClassNotFoundException {
+        Comparator<? super Node<MatrixState, MatrixOperator>> order = _open.comparator();
+
+        while (!_open.isEmpty()) {
+            Node<MatrixState, MatrixOperator> head = _open.peek();
+            if (!canImprove(head)) {
+                _open.poll();
+                continue;
+            }
+            if (_weight > 1 && _incumbent != null && order.compare(_incumbent, head) <= 0) return null;
+
+            // Expand node
+            SearchStatus stop = _meter.expand(_open.size(), _best.size());
+            if (stop != null) return stop;
+            _open.poll();
+            _closed.add(head.getState());
+
+            if (_problem.isGoal(head.getState())) {
+                if (_incumbent == null || head.getCost() < _incumbent.getCost()) _incumbent = head;
+                continue;
+            }
+
+            for (Successor<MatrixState, MatrixOperator, int[]> next : _problem.expand(head)) {
+                MatrixOperator a = next.getAction();
+                MatrixState possibleState = next.getState();
+                int deaths = head.getDeaths() + next.getStepCost()[0];
+                int kills = head.getKills() + next.getStepCost()[1];
+
+                // keep the old node unless this path is strictly cheaper
+                Node<MatrixState, MatrixOperator> known = _best.get(possibleState);
+                if (known != null && known.getCost() <= Node.packCost(deaths, kills)) continue;
+
+                // ASHeuristic1 and ASHeuristic2 only read what equals compares, so a known value is reused
+                float heuristic = known != null ? known.getHeuristic()
+                        : Search.asHeuristic(_problem, possibleState, _heuristicNum);
+                Node<MatrixState, MatrixOperator> child = new Node<>(possibleState, head, a, deaths, kills,
+                        heuristic, head.getDepth() + 1);
+                _best.put(possibleState, child);
+                if (_closed.contains(possibleState)) _inconsistent.add(child);
+                else _open.add(child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts the next search: queues the inconsistent nodes with the open ones, ordered for the new weight,
+     * and forgets which states were expanded.
+     */
+    private void reorder() {
+        PriorityQueue<Node<MatrixState, MatrixOperator>> open =
+                new PriorityQueue<>(Math.max(1, _open.size() + _inconsistent.size()), byWeightedCost(_weight));
+        for (Node<MatrixState, MatrixOperator> node : _open) {
+            if (_best.get(node.getState()) == node) open.add(node);
+        }
+        for (Node<MatrixState, MatrixOperator> node : _inconsistent) {
+            if (_best.get(node.getState()) == node) open.add(node);
+        }
+        _open = open;
+        _inconsistent.clear();
+        _closed.clear();
+    }
+
+    /**
+     * @return true if no open or inconsistent node is cheaper than the incumbent by deaths, then kills, i.e.
+     * ARA* cannot improve on it anymore
+     */
+    private boolean proven() {
+        for (Node<MatrixState, MatrixOperator> node : _open) {
+            if (canImprove(node)) return false;
+        }
+        for (Node<MatrixState, MatrixOperator> node : _inconsistent) {
+            if (canImprove(node)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if node is not stale and may still lead to a goal cheaper than the incumbent
+     */
+    private boolean canImprove(Node<MatrixState, MatrixOperator> node) {
+        if (_best.get(node.getState()) != node) return false;
+        return _incumbent == null || node.getCost() < _incumbent.getCost();
+    }
+
+    /**
+     * @return how many times the deaths of the best solution the incumbent has at most: its deaths over the
+     * fewest deaths of a node that can still improve on it, infinity if that node has none
+     */
+    private float bound() {
+        int lowest = _incumbent.getDeaths();
+        for (Node<MatrixState, MatrixOperator> node : _open) {
+            if (canImprove(node)) lowest = Math.min(lowest, node.getDeaths());
+        }
+        for (Node<MatrixState, MatrixOperator> node : _inconsistent) {
+            if (canImprove(node)) lowest = Math.min(lowest, node.getDeaths());
+        }
+        if (lowest == _incumbent.getDeaths()) return 1;
+        if (lowest == 0) return Float.POSITIVE_INFINITY;
+        return (float) _incumbent.getDeaths() / lowest;
+    }
+
+    /**
+     * Orders nodes like Search.BY_COST_AND_HEURISTIC, with the heuristic multiplied by weight.
+     */
+    private static Comparator<Node<MatrixState, MatrixOperator>> byWeightedCost(float weight) {
+        return (n1, n2) -> {
+            float myTotal = n1.getDeaths() + weight * n1.getHeuristic();
+            float otherTotal = n2.getDeaths() + weight * n2.getHeuristic();
+            if (myTotal != otherTotal) return myTotal > otherTotal ? 1 : -1;
+
+            myTotal += n1.getKills();
+            otherTotal += n2.getKills();
+            return Float.compare(myTotal, otherTotal);
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package code;
+
+/**
+ * Static helpers for bitboards: sets of grid cells stored one bit per cell in a long array, indexed by
+ * GridLayout.cell. A 15x15 grid fits in 4 longs.
+ */
+
+public class Bitboard {
+
+    private Bitboard() {
+    }
+
+    /**
+     * @param cells number of cells in the grid
+     * @return an empty bitboard able to hold every cell
+     */
+    public static long[] create(int cells) {
+        return new long[(cells + 63) >>> 6];
+    }
+
+    public static boolean get(long[] board, int cell) {
+        return (board[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public static void set(long[] board, int cell) {
+        board[cell >>> 6] |= 1L << cell;
+    }
+
+    public static void clear(long[] board, int cell) {
+        board[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * @return the number of cells in the board
+     */
+    public static int count(long[] board) {
+        int count = 0;
+        for (long word : board) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Iterates over a board: for (int c = next(b, 0); c >= 0; c = next(b, c + 1))
+     *
+     * @return the first cell in the board at or after from, -1 if there is none
+     */
+    public static int next(long[] board, int from) {
+        int i = from >>> 6;
+        if (i >= board.length) return -1;
+
+        long word = board[i] & (-1L << from);
+        while (true) {
+            if (word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+            if (++i == board.length) return -1;
+            word = board[i];
+        }
+    }
+}
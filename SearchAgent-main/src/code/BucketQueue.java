@@ -0,0 +1,101 @@
+package code;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * A frontier for small non-negative integer priorities. Nodes go into a bucket per primary key, and each of
+ * those into a bucket per secondary key, so adding and removing a node costs no comparisons at all: only
+ * the pointer to the lowest non-empty bucket moves, and it only moves as far as the keys are apart.
+ * <p>
+ * Among nodes with equal keys the oldest comes out first by default. Visited sets drop states that are equal
+ * but not equally hurt, so the tie order decides which of them survives: taking the newest first keeps
+ * states reached later, and costs UCS and A* deaths. Greedy search promises no fewest deaths and can ask for
+ * the newest first, which reaches the goal sooner than going through the ties level by level.
+ * <p>
+ * For UCS and A* the primary key is deaths plus heuristic and the secondary key is kills, the same order
+ * Search.BY_COST_AND_HEURISTIC gives when the heuristic is an integer.
+ *
+ * @param <N> node type
+ */
+
+public class BucketQueue<N> implements Frontier<N> {
+
+    private final ToIntFunction<N> _primary;
+    private final ToIntFunction<N> _secondary;
+    private final boolean _newestFirst;
+
+    /**
+     * buckets: for every primary key, the bucket of every secondary key.
+     * sizes: number of nodes under every primary key.
+     * minSecondary: lowest secondary key that may be non-empty, for every primary key.
+     * min: lowest primary key that may be non-empty.
+     */
+
+    private final ArrayList<ArrayList<ArrayDeque<N>>> _buckets = new ArrayList<>();
+    private int[] _sizes = new int[16];
+    private int[] _minSecondary = new int[16];
+    private int _min;
+    private int _size;
+
+    public BucketQueue(ToIntFunction<N> primary, ToIntFunction<N> secondary) {
+        this(primary, secondary, false);
+    }
+
+    /**
+     * @param newestFirst take the newest of the nodes with equal keys first instead of the oldest
+     */
+    public BucketQueue(ToIntFunction<N> primary, ToIntFunction<N> secondary, boolean newestFirst) {
+        _primary = primary;
+        _secondary = secondary;
+        _newestFirst = newestFirst;
+    }
+
+    // ============================Additional-Methods===========================
+
+    @Override
+    public void add(N node) {
+        int p = _primary.applyAsInt(node);
+        int q = _secondary.applyAsInt(node);
+        if (p < 0 || q < 0) throw new IllegalArgumentException("bucket keys must be non-negative: " + p + ", " + q);
+
+        while (_buckets.size() <= p) _buckets.add(new ArrayList<>());
+        if (p >= _sizes.length) {
+            int length = Math.max(p + 1, _sizes.length * 2);
+            _sizes = Arrays.copyOf(_sizes, length);
+            _minSecondary = Arrays.copyOf(_minSecondary, length);
+        }
+
+        ArrayList<ArrayDeque<N>> level = _buckets.get(p);
+        while (level.size() <= q) level.add(new ArrayDeque<>());
+        level.get(q).addLast(node);
+
+        if (_sizes[p]++ == 0 || q < _minSecondary[p]) _minSecondary[p] = q;
+        if (_size++ == 0 || p < _min) _min = p;
+    }
+
+    @Override
+    public N poll() {
+        while (_sizes[_min] == 0) _min++;
+
+        ArrayList<ArrayDeque<N>> level = _buckets.get(_min);
+        while (level.get(_minSecondary[_min]).isEmpty()) _minSecondary[_min]++;
+
+        _sizes[_min]--;
+        _size--;
+        ArrayDeque<N> bucket = level.get(_minSecondary[_min]);
+        return _newestFirst ? bucket.pollLast() : bucket.pollFirst();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+}
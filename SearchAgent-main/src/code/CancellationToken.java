@@ -0,0 +1,42 @@
+package code;
+
+/**
+ * Lets one thread ask a search running in another to stop. Searches check the token once per expanded node,
+ * as part of their SearchBudget, and once it is cancelled return with status CANCELLED, dropping their
+ * frontier and visited states.
+ * <p>
+ * A token may have a parent, and is cancelled as soon as its parent is, so cancelling a search that runs
+ * other searches (see PORTFOLIO in Search) stops all of them.
+ */
+
+public class CancellationToken {
+
+    private final CancellationToken _parent;
+    private volatile boolean _cancelled;
+
+    public CancellationToken() {
+        this(null);
+    }
+
+    /**
+     * @param parent token whose cancellation also cancels this one, null for none
+     */
+    public CancellationToken(CancellationToken parent) {
+        _parent = parent;
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    public boolean isCancelled() {
+        return _cancelled || (_parent != null && _parent.isCancelled());
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Asks every search checking this token, or a token below it, to stop. Does not wait for them.
+     */
+    public void cancel() {
+        _cancelled = true;
+    }
+}
@@ -0,0 +1,161 @@
+package code;
+
+/**
+ * A set of visited matrix states that also discards dominated states. A state is dominated by a visited
+ * state that is equal to it in everything but Neo's damage, with Neo no more damaged: Neo's damage only
+ * decides when he dies, and lower damage stays lower through every action, so the dominated state can
+ * reach nothing the visited one cannot. Hostage damage needs no comparison of its own, since states that
+ * differ only in it are already the same visited state (see MatrixStateEncoder).
+ * <p>
+ * States are stored packed, like in VisitedSet, and looked up by their Zobrist hash with Neo's damage
+ * XORed out, so all states that may dominate each other land in the same probe sequence.
+ */
+
+public class DominanceSet implements StateSet<MatrixState> {
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+
+    private final MatrixStateEncoder _encoder;
+    private final ZobristKeys _zobrist;
+    private final boolean _replace;
+    private final int _words;
+
+    /**
+     * keys: packed states, _words longs per slot.
+     * hashes: Zobrist hash of the state in each slot, without Neo's damage.
+     * damage: Neo's damage in the state in each slot.
+     * used: whether a slot holds a state.
+     * scratch: the state being looked up, packed.
+     */
+
+    private long[] _keys;
+    private long[] _hashes;
+    private int[] _damage;
+    private boolean[] _used;
+    private int _mask;
+    private int _size;
+    private final long[] _scratch;
+
+    /**
+     * @param replace when a state dominates a stored one, overwrite the stored one rather than storing both.
+     *                That keeps one entry per position, at the cost of forgetting the dominated entry.
+     */
+    public DominanceSet(MatrixStateEncoder encoder, ZobristKeys zobrist, boolean replace) {
+        _encoder = encoder;
+        _zobrist = zobrist;
+        _replace = replace;
+        _words = encoder.words();
+        _scratch = new long[_words];
+
+        _keys = new long[DEFAULT_CAPACITY * _words];
+        _hashes = new long[DEFAULT_CAPACITY];
+        _damage = new int[DEFAULT_CAPACITY];
+        _used = new boolean[DEFAULT_CAPACITY];
+        _mask = DEFAULT_CAPACITY - 1;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Adds a state to the set unless a stored state dominates it.
+     *
+     * @param s state to add
+     * @return true if no stored state dominates s
+     */
+
+    @Override
+    public boolean add(MatrixState s) {
+        int damage = s.getNeo().getDamage();
+        long hash = positionHash(s);
+        int slot = mix(hash) & _mask;
+        boolean packed = false;
+
+        while (_used[slot]) {
+            if (_hashes[slot] == hash) {
+                if (!packed) {
+                    _encoder.encode(s, _scratch, 0);
+                    packed = true;
+                }
+                if (_encoder.dominanceKeyEquals(_keys, slot * _words, _scratch, 0)) {
+                    if (_damage[slot] <= damage) return false;
+                    if (_replace) {
+                        store(slot, hash, damage);
+                        return true;
+                    }
+                }
+            }
+            slot = (slot + 1) & _mask;
+        }
+
+        if (!packed) _encoder.encode(s, _scratch, 0);
+        store(slot, hash, damage);
+        _used[slot] = true;
+        if (++_size * 2 > _used.length) grow();
+        return true;
+    }
+
+    /**
+     * @return true if a stored state dominates s
+     */
+    @Override
+    public boolean contains(MatrixState s) {
+        int damage = s.getNeo().getDamage();
+        long hash = positionHash(s);
+        boolean packed = false;
+
+        for (int slot = mix(hash) & _mask; _used[slot]; slot = (slot + 1) & _mask) {
+            if (_hashes[slot] != hash || _damage[slot] > damage) continue;
+
+            if (!packed) {
+                _encoder.encode(s, _scratch, 0);
+                packed = true;
+            }
+            if (_encoder.dominanceKeyEquals(_keys, slot * _words, _scratch, 0)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    private long positionHash(MatrixState s) {
+        return s.getHash() ^ _zobrist.neoDamage(s.getNeo().getDamage());
+    }
+
+    private void store(int slot, long hash, int damage) {
+        System.arraycopy(_scratch, 0, _keys, slot * _words, _words);
+        _hashes[slot] = hash;
+        _damage[slot] = damage;
+    }
+
+    private static int mix(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void grow() {
+        long[] oldKeys = _keys;
+        long[] oldHashes = _hashes;
+        int[] oldDamage = _damage;
+        boolean[] oldUsed = _used;
+
+        _keys = new long[oldKeys.length * 2];
+        _hashes = new long[oldHashes.length * 2];
+        _damage = new int[oldDamage.length * 2];
+        _used = new boolean[oldUsed.length * 2];
+        _mask = _used.length - 1;
+
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i]) continue;
+
+            int slot = mix(oldHashes[i]) & _mask;
+            while (_used[slot]) slot = (slot + 1) & _mask;
+
+            System.arraycopy(oldKeys, i * _words, _keys, slot * _words, _words);
+            _hashes[slot] = oldHashes[i];
+            _damage[slot] = oldDamage[i];
+            _used[slot] = true;
+        }
+    }
+}
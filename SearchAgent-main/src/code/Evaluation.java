@@ -0,0 +1,22 @@
+package code;
+
+/**
+ * How a search evaluates the nodes it generates: the path cost a step adds and the heuristic of the new state,
+ * which together decide where the frontier puts the node.
+ *
+ * @param <State>    state type
+ * @param <Operator> action type
+ * @param <Cost>     step cost type of the problem
+ */
+
+public interface Evaluation<State, Operator, Cost> {
+
+    /**
+     * @param parent   node the action was applied to
+     * @param action   action applied
+     * @param state    state the action leads to
+     * @param stepCost cost of the action, see SearchProblem.stepCost
+     * @return the node of state, one level below parent
+     */
+    Node<State, Operator> child(Node<State, Operator> parent, Operator action, State state, Cost stepCost);
+}
@@ -0,0 +1,440 @@
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Breadth-first search that keeps its layers on disk, with delayed duplicate detection. Every layer is a file of
+ * packed states (see MatrixStateEncoder) sorted by state. A layer is expanded by streaming its file, and its
+ * successors are collected in memory until externalRunSize of them are, then sorted and written out as a run.
+ * The runs are then merged into the next layer, dropping states that appear twice, and states that appear in
+ * one of the externalDuplicateLayers layers before it, whose files are streamed alongside. At most FAN_IN runs
+ * are merged at once: with more, groups of them are first merged into longer runs, as often as it takes. So
+ * memory and open files are bounded by the run size, FAN_IN, and externalDuplicateLayers, whatever the grid,
+ * except that with externalDuplicateLayers at 0 every layer before is open during the last merge.
+ * <p>
+ * Actions are rarely undone in one step, so few duplicates hide further back than two layers, but some do,
+ * like walking around a block: they are expanded again, one layer deeper. Without a goal, layers only run out
+ * if externalDuplicateLayers is 0, which compares every layer against all the ones before it.
+ * <p>
+ * Every record also holds the packed parent state, so the plan is rebuilt by finding the parent of the goal in
+ * the layer before, then its parent in the layer before that, and so on.
+ * <p>
+ * After every layer, a manifest with the initial state and the number of finished layers is written to the
+ * scratch directory. A search of the same grid started on a directory with a manifest resumes at the first
+ * layer not yet expanded. A search of another grid starts over and deletes the files of the old one. The files
+ * are deleted once the search finds a goal or runs out of layers, and kept when the budget stops it.
+ */
+
+public class ExternalBFS {
+
+    private static final int MAGIC = 0x42464531;
+    private static final int NO_ACTION = -1;
+    private static final String MANIFEST = "manifest";
+
+    /**
+     * Most runs a merge reads at once.
+     */
+    private static final int FAN_IN = 16;
+
+    private final Matrix _problem;
+    private final MatrixStateEncoder _encoder;
+    private final File _directory;
+    private final int _bufferSize;
+    private final int _runSize;
+    private final int _duplicateLayers;
+    private final SearchMeter _meter;
+
+    /**
+     * Record layout, in longs:
+     * state: words() longs of the packed state.
+     * parent: words() longs of the packed parent state, the root's own state for the root.
+     * cost: deaths and kills, see Node.packCost.
+     * action: ordinal of the action that generated the state, NO_ACTION for the root.
+     * <p>
+     * words: longs per packed state.
+     * stride: longs per record.
+     * root: record of the initial state.
+     */
+
+    private final int _words;
+    private final int _stride;
+    private final long[] _root;
+
+    public ExternalBFS(Matrix problem, SearchOptions options) {
+        _problem = problem;
+        _encoder = problem.getEncoder();
+        _directory = new File(options.getExternalDirectory());
+        _bufferSize = Math.max(8, options.getExternalBufferSize());
+        _runSize = Math.max(1, options.getExternalRunSize());
+        _duplicateLayers = options.getExternalDuplicateLayers();
+        _meter = new SearchMeter(options.getBudget());
+
+        _words = _encoder.words();
+        _stride = 2 * _words + 2;
+        _root = new long[_stride];
+        _encoder.encode(problem.initialState, _root, 0);
+        System.arraycopy(_root, 0, _root, _words, _words);
+        _root[2 * _words + 1] = NO_ACTION;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * @return the goal node, whose ancestors lead back to the root, with the statistics of this run only
+     */
+    public SearchResult<MatrixState, MatrixOperator> search() throws IOException, ClassNotFoundException {
+        int depth = resume();
+        long stored = 0;
+        for (int d = 0; d <= depth; d++) stored += records(layerFile(d));
+
+        Node<MatrixState, MatrixOperator> view = new Node<>();
+        long[] buffer = new long[_runSize * _stride];
+
+        while (true) {
+            File layer = layerFile(depth);
+            long size = records(layer);
+            if (size == 0) {
+                deleteFiles(0);
+                return _meter.result(SearchStatus.FAILED, null);
+            }
+
+            ArrayList<File> runs = new ArrayList<>();
+            int buffered = 0;
+            try (RecordReader in = new RecordReader(layer)) {
+                for (long i = 0; in.next(); i++) {
+                    // Expand node
+                    SearchStatus stop = _meter.expand((int) Math.min(Integer.MAX_VALUE, size - i + buffered),
+                            (int) Math.min(Integer.MAX_VALUE, stored));
+                    if (stop != null) {
+                        for (File run : runs) Files.deleteIfExists(run.toPath());
+                        return _meter.result(stop, null);
+                    }
+
+                    long[] record = in.record;
+                    MatrixState state = state(record, 0);
+                    int action = (int) record[2 * _words + 1];
+                    if (_problem.isGoal(state)) {
+                        Node<MatrixState, MatrixOperator> goal = path(depth, record);
+                        deleteFiles(0);
+                        return _meter.result(SearchStatus.SOLVED, goal);
+                    }
+
+                    view.setState(state);
+                    view.setAction(action == NO_ACTION ? null : MatrixOperator.values()[action]);
+                    for (Successor<MatrixState, MatrixOperator, int[]> next : _problem.expand(view)) {
+                        int[] cost = next.getStepCost();
+
+                        int off = buffered * _stride;
+                        _encoder.encode(next.getState(), buffer, off);
+                        System.arraycopy(record, 0, buffer, off + _words, _words);
+                        buffer[off + 2 * _words] = Node.packCost((int) (record[2 * _words] >>> 32) + cost[0],
+                                (int) record[2 * _words] + cost[1]);
+                        buffer[off + 2 * _words + 1] = next.getAction().ordinal();
+
+                        if (++buffered == _runSize) {
+                            runs.add(writeRun(buffer, buffered, depth + 1, runs.size()));
+                            buffered = 0;
+                        }
+                    }
+                }
+            }
+            if (buffered > 0) runs.add(writeRun(buffer, buffered, depth + 1, runs.size()));
+
+            stored += merge(runs, depth + 1);
+            depth++;
+            writeManifest(depth);
+        }
+    }
+
+    private File layerFile(int depth) {
+        return new File(_directory, "layer-" + depth);
+    }
+
+    private long records(File file) {
+        return file.length() / (_stride * 8L);
+    }
+
+    /**
+     * @return the state of the record at record[off], hash included
+     */
+    private MatrixState state(long[] record, int off) {
+        MatrixState s = _encoder.decode(record, off);
+        s.setHash(_problem.getZobrist().hash(s));
+        return s;
+    }
+
+    /**
+     * Orders records by state, then cheapest first. Records left tied are ordered by all of their words, so the
+     * record kept for a state does not depend on how the successors were split into runs.
+     */
+    private int compare(long[] a, int aOff, long[] b, int bOff) {
+        int c = _encoder.keyCompare(a, aOff, b, bOff);
+        if (c != 0) return c;
+        c = Long.compare(a[aOff + 2 * _words], b[bOff + 2 * _words]);
+        if (c != 0) return c;
+        for (int w = 0; w < _stride; w++) {
+            c = Long.compare(a[aOff + w], b[bOff + w]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    // ================================Layers-on-Disk=================================
+
+    /**
+     * Picks up where an earlier search of the same grid left off, or starts over with only the root layer.
+     *
+     * @return the first layer not expanded yet
+     */
+    private int resume() throws IOException {
+        if (!_directory.isDirectory() && !_directory.mkdirs()) {
+            throw new IOException("cannot create scratch directory " + _directory);
+        }
+
+        File manifest = new File(_directory, MANIFEST);
+        if (manifest.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+                boolean same = in.readInt() == MAGIC && in.readInt() == _words;
+                for (int i = 0; i < _words; i++) same &= in.readLong() == _root[i];
+                int depth = in.readInt();
+                if (same && layerFile(depth).isFile()) {
+                    deleteFiles(depth + 1);
+                    return depth;
+                }
+            }
+        }
+
+        deleteFiles(0);
+        try (DataOutputStream out = output(layerFile(0))) {
+            for (long word : _root) out.writeLong(word);
+        }
+        writeManifest(0);
+        return 0;
+    }
+
+    /**
+     * Records that every layer up to depth is on disk. The manifest is replaced in one step, so a search
+     * stopped at any point finds either the old one or the new one.
+     */
+    private void writeManifest(int depth) throws IOException {
+        File tmp = new File(_directory, MANIFEST + ".tmp");
+        try (DataOutputStream out = output(tmp)) {
+            out.writeInt(MAGIC);
+            out.writeInt(_words);
+            for (int i = 0; i < _words; i++) out.writeLong(_root[i]);
+            out.writeInt(depth);
+        }
+        Files.move(tmp.toPath(), new File(_directory, MANIFEST).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the files this search writes, and no others: with keep at 0 all of them, otherwise the runs,
+     * unfinished files, and layers from keep on, which a stopped search may have left behind.
+     */
+    private void deleteFiles(int keep) throws IOException {
+        File[] files = _directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            boolean ours = name.startsWith("layer-") || name.startsWith("run-") || name.startsWith(MANIFEST);
+            if (!ours) continue;
+            if (keep > 0 && name.equals(MANIFEST)) continue;
+            if (keep > 0 && name.startsWith("layer-") && !name.endsWith(".tmp")
+                    && Integer.parseInt(name.substring("layer-".length())) < keep) continue;
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private DataOutputStream output(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), _bufferSize));
+    }
+
+    /**
+     * Sorts the first count records of buffer and writes them to a run file, keeping only the cheapest record
+     * of every state.
+     */
+    private File writeRun(long[] buffer, int count, int depth, int index) throws IOException {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        Arrays.sort(order, (x, y) -> compare(buffer, x * _stride, buffer, y * _stride));
+
+        File run = new File(_directory, "run-" + depth + "-" + index);
+        try (DataOutputStream out = output(run)) {
+            int last = -1;
+            for (int i : order) {
+                if (last >= 0 && _encoder.keyEquals(buffer, last * _stride, buffer, i * _stride)) continue;
+                for (int w = 0; w < _stride; w++) out.writeLong(buffer[i * _stride + w]);
+                last = i;
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges the runs into the file of layer depth, keeping the cheapest record of every state and dropping
+     * the states of the layers before it that duplicates are looked for in. Deletes the runs.
+     *
+     * @return the number of states in the new layer
+     */
+    private long merge(List<File> runs, int depth) throws IOException {
+        // merge groups of runs into longer ones until the last merge can read them all at once
+        for (int pass = 1; runs.size() > FAN_IN; pass++) {
+            ArrayList<File> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += FAN_IN) {
+                File run = new File(_directory, "run-" + depth + "-" + pass + "-" + merged.size());
+                mergeInto(runs.subList(i, Math.min(i + FAN_IN, runs.size())), run, new ArrayList<>());
+                merged.add(run);
+            }
+            runs = merged;
+        }
+
+        ArrayList<RecordReader> previous = new ArrayList<>();
+        File tmp = new File(_directory, "layer-" + depth + ".tmp");
+        long written;
+        try {
+            int oldest = _duplicateLayers <= 0 ? 0 : Math.max(0, depth - _duplicateLayers);
+            for (int d = oldest; d < depth; d++) {
+                RecordReader reader = new RecordReader(layerFile(d));
+                previous.add(reader);
+                reader.next();
+            }
+            written = mergeInto(runs, tmp, previous);
+        } finally {
+            for (RecordReader reader : previous) reader.close();
+        }
+
+        Files.move(tmp.toPath(), layerFile(depth).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return written;
+    }
+
+    /**
+     * Merges sorted runs into one sorted file, keeping the cheapest record of every state and dropping the
+     * states that previous holds. Deletes the runs.
+     *
+     * @param previous readers of earlier layers, see reachedBefore
+     * @return the number of records written
+     */
+    private long mergeInto(List<File> runs, File target, ArrayList<RecordReader> previous) throws IOException {
+        PriorityQueue<RecordReader> heads = new PriorityQueue<>((r1, r2) -> compare(r1.record, 0, r2.record, 0));
+        long written = 0;
+
+        try (DataOutputStream out = output(target)) {
+            for (File run : runs) {
+                RecordReader reader = new RecordReader(run);
+                if (reader.next()) heads.add(reader);
+                else reader.close();
+            }
+
+            long[] last = new long[_stride];
+            boolean any = false;
+            while (!heads.isEmpty()) {
+                RecordReader head = heads.poll();
+                long[] record = head.record;
+
+                // equal states come out together, cheapest first
+                if (!any || !_encoder.keyEquals(last, 0, record, 0)) {
+                    System.arraycopy(record, 0, last, 0, _stride);
+                    any = true;
+                    if (!reachedBefore(previous, record)) {
+                        for (long word : record) out.writeLong(word);
+                        written++;
+                    }
+                }
+
+                if (head.next()) heads.add(head);
+                else head.close();
+            }
+        } finally {
+            for (RecordReader reader : heads) reader.close();
+            for (File run : runs) Files.deleteIfExists(run.toPath());
+        }
+        return written;
+    }
+
+    /**
+     * Advances every reader of an earlier layer up to the state of record, which comes after every state
+     * asked about before.
+     *
+     * @return true if one of the layers holds the state of record
+     */
+    private boolean reachedBefore(ArrayList<RecordReader> previous, long[] record) throws IOException {
+        boolean found = false;
+        for (RecordReader reader : previous) {
+            while (reader.hasRecord && _encoder.keyCompare(reader.record, 0, record, 0) < 0) reader.next();
+            found |= reader.hasRecord && _encoder.keyEquals(reader.record, 0, record, 0);
+        }
+        return found;
+    }
+
+    /**
+     * Rebuilds the path to the goal record of layer depth by looking up every parent in the layer before.
+     *
+     * @return the goal node, whose ancestors lead back to the root
+     */
+    private Node<MatrixState, MatrixOperator> path(int depth, long[] goal) throws IOException {
+        long[][] chain = new long[depth + 1][];
+        chain[depth] = goal.clone();
+        for (int d = depth - 1; d >= 0; d--) {
+            long[] child = chain[d + 1];
+            try (RecordReader in = new RecordReader(layerFile(d))) {
+                while (chain[d] == null && in.next()) {
+                    if (_encoder.keyEquals(in.record, 0, child, _words)) chain[d] = in.record.clone();
+                }
+            }
+            if (chain[d] == null) throw new IOException("parent missing from " + layerFile(d));
+        }
+
+        Node<MatrixState, MatrixOperator> node = null;
+        for (int d = 0; d <= depth; d++) {
+            long[] record = chain[d];
+            long cost = record[2 * _words];
+            int action = (int) record[2 * _words + 1];
+            node = new Node<>(state(record, 0), node, action == NO_ACTION ? null : MatrixOperator.values()[action],
+                    (int) (cost >>> 32), (int) cost, 0, d);
+        }
+        return node;
+    }
+
+    /**
+     * Streams the records of a layer or run file. record holds the current one once next returned true.
+     */
+    private class RecordReader implements Closeable {
+        final long[] record = new long[_stride];
+        final DataInputStream in;
+        long remaining;
+        boolean hasRecord;
+
+        RecordReader(File file) throws IOException {
+            remaining = records(file);
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), _bufferSize));
+        }
+
+        boolean next() throws IOException {
+            hasRecord = remaining > 0;
+            if (!hasRecord) return false;
+            for (int w = 0; w < _stride; w++) record[w] = in.readLong();
+            remaining--;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
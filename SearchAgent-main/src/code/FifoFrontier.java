@@ -0,0 +1,36 @@
+package code;
+
+import java.util.ArrayDeque;
+
+/**
+ * A first-in first-out frontier, which makes the kernel a breadth-first search.
+ *
+ * @param <N> node type
+ */
+
+public class FifoFrontier<N> implements Frontier<N> {
+
+    private final ArrayDeque<N> _queue = new ArrayDeque<>();
+
+    // ============================Additional-Methods===========================
+
+    @Override
+    public void add(N node) {
+        _queue.addLast(node);
+    }
+
+    @Override
+    public N poll() {
+        return _queue.pollFirst();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _queue.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return _queue.size();
+    }
+}
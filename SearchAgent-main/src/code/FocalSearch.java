@@ -0,0 +1,190 @@
+package code;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Focal search (A*epsilon) with a suboptimality factor w. Instead of the open node with the fewest deaths, the
+ * search expands the node of FOCAL, the open nodes with at most w times the fewest deaths, that seems closest to
+ * a goal. The goal found then has at most w times the deaths of the best plan, and with the fewest deaths
+ * at 0 every node of FOCAL is free of deaths, so no death is ever risked while a plan without one may exist.
+ * <p>
+ * Our heuristics count actions, not deaths, so they are not lower bounds on deaths and only serve as the
+ * distance to go that orders FOCAL, ties going to the deeper node, then to fewer deaths and kills. The bound
+ * uses the deaths alone, which is what makes it hold. Kills are not bounded.
+ * <p>
+ * Open nodes over the bound wait in buckets by deaths and join FOCAL when the fewest deaths grow. A node of
+ * FOCAL over the bound after the fewest deaths shrank goes back to waiting. Like ASIndexed, a cheaper path to a
+ * state replaces its node, reopening it if it was expanded. Unlike ASIndexed, so does an equally cheap path that
+ * hurts the hostages less: FOCAL does not reach states in order of time taken like UC does, and keeping the
+ * first path found would lose plans without deaths.
+ */
+
+public class FocalSearch {
+
+    private final Matrix _problem;
+    private final int _heuristicNum;
+    private final float _weight;
+    private final SearchMeter _meter;
+
+    /**
+     * best: the cheapest node known for every state reached, and whether it is open. Nodes in focal or waiting
+     * that are not the open best node of their state are stale and skipped.
+     * openDeaths: number of open nodes for every number of deaths, the smallest key is the fewest deaths.
+     * focal: open nodes with deaths within the bound, closest to a goal first.
+     * waiting: open nodes with deaths over the bound, by deaths.
+     * bound: w times the fewest deaths when focal was last filled.
+     */
+
+    private final HashMap<MatrixState, Entry> _best = new HashMap<>();
+    private final TreeMap<Integer, Integer> _openDeaths = new TreeMap<>();
+    private final PriorityQueue<Node<MatrixState, MatrixOperator>> _focal = new PriorityQueue<>(BY_DISTANCE_TO_GO);
+    private final TreeMap<Integer, ArrayList<Node<MatrixState, MatrixOperator>>> _waiting = new TreeMap<>();
+    private int _open;
+    private float _bound;
+
+    private static class Entry {
+        Node<MatrixState, MatrixOperator> node;
+        boolean open;
+
+        Entry(Node<MatrixState, MatrixOperator> node) {
+            this.node = node;
+            this.open = true;
+        }
+    }
+
+    /**
+     * Orders nodes by heuristic, then deeper first, then by deaths and kills.
+     */
+    private static final Comparator<Node<MatrixState, MatrixOperator>> BY_DISTANCE_TO_GO = (n1, n2) -> {
+        if (n1.getHeuristic() != n2.getHeuristic()) return Float.compare(n1.getHeuristic(), n2.getHeuristic());
+        if (n1.getDepth() != n2.getDepth()) return Integer.compare(n2.getDepth(), n1.getDepth());
+        return Long.compare(n1.getCost(), n2.getCost());
+    };
+
+    /**
+     * @param heuristicNum 1 or 2, for Matrix.ASHeuristic1 or Matrix.ASHeuristic2
+     * @param weight       the suboptimality factor w, at least 1
+     */
+    public FocalSearch(Matrix problem, int heuristicNum, float weight, SearchOptions options) {
+        _problem = problem;
+        _heuristicNum = heuristicNum;
+        _weight = weight;
+        _meter = new SearchMeter(options.getBudget());
+    }
+
+    // ============================Additional-Methods===========================
+
+    public SearchResult<MatrixState, MatrixOperator> search(Node<MatrixState, MatrixOperator> root) throws IOException, ClassNotFoundException {
+        root.setHeuristic(Search.asHeuristic(_problem, root.getState(), _heuristicNum));
+        _bound = _weight * root.getDeaths();
+        _best.put(root.getState(), new Entry(root));
+        open(root);
+
+        while (_open > 0) {
+            Node<MatrixState, MatrixOperator> head = pollFocal();
+            if (head == null) continue;
+
+            // Expand node
+            SearchStatus stop = _meter.expand(_open, _best.size());
+            if (stop != null) return _meter.result(stop, null);
+            close(head);
+
+            if (_problem.isGoal(head.getState())) return _meter.result(SearchStatus.SOLVED, head);
+
+            for (Successor<MatrixState, MatrixOperator, int[]> next : _problem.expand(head)) {
+                MatrixOperator a = next.getAction();
+                MatrixState possibleState = next.getState();
+                int deaths = head.getDeaths() + next.getStepCost()[0];
+                int kills = head.getKills() + next.getStepCost()[1];
+
+                // keep the old node unless this path is cheaper, or as cheap and hurts the hostages less
+                Entry known = _best.get(possibleState);
+                if (known != null && !Search.cheaperOrLessHurt(Node.packCost(deaths, kills), possibleState, known.node)) {
+                    continue;
+                }
+
+                // ASHeuristic1 and ASHeuristic2 only read what equals compares, so a known value is reused
+                float heuristic = known != null ? known.node.getHeuristic()
+                        : Search.asHeuristic(_problem, possibleState, _heuristicNum);
+                Node<MatrixState, MatrixOperator> child = new Node<>(possibleState, head, a, deaths, kills,
+                        heuristic, head.getDepth() + 1);
+                if (known == null) {
+                    _best.put(possibleState, new Entry(child));
+                } else {
+                    if (known.open) close(known.node);
+                    known.node = child;
+                    known.open = true;
+                }
+                open(child);
+            }
+        }
+
+        return _meter.result(SearchStatus.FAILED, null);
+    }
+
+    /**
+     * Counts node as open and queues it in focal or waiting. Its entry in best must already be set.
+     */
+    private void open(Node<MatrixState, MatrixOperator> node) {
+        _openDeaths.merge(node.getDeaths(), 1, Integer::sum);
+        _open++;
+        if (node.getDeaths() <= _bound) _focal.add(node);
+        else waitFor(node);
+    }
+
+    /**
+     * Stops counting node as open. Its entry in best is updated by the caller.
+     */
+    private void close(Node<MatrixState, MatrixOperator> node) {
+        int deaths = node.getDeaths();
+        int count = _openDeaths.get(deaths);
+        if (count == 1) _openDeaths.remove(deaths);
+        else _openDeaths.put(deaths, count - 1);
+        _open--;
+        _best.get(node.getState()).open = false;
+    }
+
+    private void waitFor(Node<MatrixState, MatrixOperator> node) {
+        _waiting.computeIfAbsent(node.getDeaths(), k -> new ArrayList<>()).add(node);
+    }
+
+    /**
+     * Moves the bound to w times the fewest open deaths and takes the best node of focal.
+     *
+     * @return the node to expand, or null if the node taken was stale or is over the bound, in which case the
+     * caller tries again
+     */
+    private Node<MatrixState, MatrixOperator> pollFocal() {
+        float bound = _weight * _openDeaths.firstKey();
+        if (bound > _bound) {
+            Map<Integer, ArrayList<Node<MatrixState, MatrixOperator>>> joining = _waiting.headMap((int) bound, true);
+            for (ArrayList<Node<MatrixState, MatrixOperator>> bucket : joining.values()) {
+                for (Node<MatrixState, MatrixOperator> node : bucket) {
+                    if (isOpen(node)) _focal.add(node);
+                }
+            }
+            joining.clear();
+        }
+        _bound = bound;
+
+        // a node with the fewest deaths is always in focal, so focal is not empty
+        Node<MatrixState, MatrixOperator> head = _focal.poll();
+        if (!isOpen(head)) return null;
+        if (head.getDeaths() > _bound) {
+            waitFor(head);
+            return null;
+        }
+        return head;
+    }
+
+    private boolean isOpen(Node<MatrixState, MatrixOperator> node) {
+        Entry e = _best.get(node.getState());
+        return e.node == node && e.open;
+    }
+}
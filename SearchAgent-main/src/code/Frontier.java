@@ -0,0 +1,23 @@
+package code;
+
+/**
+ * The open list of a best-first search: the nodes generated but not yet expanded, returned best first.
+ *
+ * @param <N> node type
+ */
+
+public interface Frontier<N> {
+
+    void add(N node);
+
+    /**
+     * Removes the best node. The frontier must not be empty.
+     *
+     * @return the best node
+     */
+    N poll();
+
+    boolean isEmpty();
+
+    int size();
+}
@@ -0,0 +1,172 @@
+package code;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The static part of a matrix problem: everything about the grid that never changes once it is parsed.
+ * A single instance is built by Helpers.parseGrid and shared by the problem and all of its states, so
+ * states neither copy nor compare it.
+ */
+
+public class GridLayout {
+
+    /**
+     * gridDims: number of rows (x) and columns (y) of the grid.
+     * teleBoothLoc: Location of the telephone booth.
+     * padLocs: every pad mapped to the pad it flies to.
+     */
+
+    private final Location _gridDims;
+    private final Location _teleBoothLoc;
+    private final HashMap<Location, Location> _padLocs;
+
+    /**
+     * The canonical location of every cell, indexed by cell.
+     */
+    private final Location[] _locations;
+
+    /**
+     * Bitboard of the cells holding a pad.
+     */
+    private final long[] _pads;
+
+    /**
+     * Builds a layout. The booth and pads are replaced by their canonical locations.
+     */
+
+    public GridLayout(Location gridDims, Location teleBoothLoc, HashMap<Location, Location> padLocs) {
+        _gridDims = gridDims;
+
+        _locations = new Location[gridDims.getX() * gridDims.getY()];
+        for (int i = 0; i < gridDims.getX(); i++) {
+            for (int j = 0; j < gridDims.getY(); j++) {
+                _locations[i * gridDims.getY() + j] = new Location(i, j);
+            }
+        }
+
+        _teleBoothLoc = intern(teleBoothLoc);
+        _padLocs = new HashMap<>();
+        _pads = Bitboard.create(_locations.length);
+        for (Location src : padLocs.keySet()) {
+            _padLocs.put(intern(src), intern(padLocs.get(src)));
+            Bitboard.set(_pads, cell(src));
+        }
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    public Location getGridDims() {
+        return _gridDims;
+    }
+
+    public Location getTeleBoothLoc() {
+        return _teleBoothLoc;
+    }
+
+    public HashMap<Location, Location> getPadLocs() {
+        return _padLocs;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * @return number of cells in the grid
+     */
+    public int cells() {
+        return _gridDims.getX() * _gridDims.getY();
+    }
+
+    /**
+     * @return the index of a location's cell, row major
+     */
+    public int cell(Location l) {
+        return l.getX() * _gridDims.getY() + l.getY();
+    }
+
+    /**
+     * @return the canonical location of cell (x, y), or null if it is outside the grid
+     */
+    public Location location(int x, int y) {
+        if (x < 0 || y < 0 || x >= _gridDims.getX() || y >= _gridDims.getY()) return null;
+        return _locations[x * _gridDims.getY() + y];
+    }
+
+    /**
+     * @return the canonical location of a cell index
+     */
+    public Location location(int cell) {
+        return _locations[cell];
+    }
+
+    /**
+     * @return true if l holds a pad Neo can fly from
+     */
+    public boolean isPad(Location l) {
+        return Bitboard.get(_pads, cell(l));
+    }
+
+    /**
+     * @return the canonical instance equal to l
+     */
+    public Location intern(Location l) {
+        return _locations[cell(l)];
+    }
+
+    /**
+     * @return the canonical location next to l in the direction of a movement operator, or null if that
+     * would leave the grid or op is not a movement
+     */
+    public Location neighbour(Location l, MatrixOperator op) {
+        switch (op) {
+            case UP:
+                return location(l.getX() - 1, l.getY());
+            case DOWN:
+                return location(l.getX() + 1, l.getY());
+            case LEFT:
+                return location(l.getX(), l.getY() - 1);
+            case RIGHT:
+                return location(l.getX(), l.getY() + 1);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Number of actions Neo needs to reach cell from every cell, moving or flying, as if no cell was blocked.
+     * Agents and hostages are not part of the layout, so these are lower bounds in every state.
+     *
+     * @return distances indexed by cell
+     */
+    public int[] distancesTo(int cell) {
+        int[] distance = new int[cells()];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        distance[cell] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(cell);
+
+        while (!queue.isEmpty()) {
+            int c = queue.poll();
+            Location l = _locations[c];
+
+            // cells one action away from c: its neighbours, since moves go both ways, and the pads flying to c
+            for (MatrixOperator op : new MatrixOperator[]{MatrixOperator.UP, MatrixOperator.DOWN,
+                    MatrixOperator.LEFT, MatrixOperator.RIGHT}) {
+                Location from = neighbour(l, op);
+                if (from != null && distance[cell(from)] == Integer.MAX_VALUE) {
+                    distance[cell(from)] = distance[c] + 1;
+                    queue.add(cell(from));
+                }
+            }
+            for (Map.Entry<Location, Location> pad : _padLocs.entrySet()) {
+                if (pad.getValue() == l && distance[cell(pad.getKey())] == Integer.MAX_VALUE) {
+                    distance[cell(pad.getKey())] = distance[c] + 1;
+                    queue.add(cell(pad.getKey()));
+                }
+            }
+        }
+        return distance;
+    }
+}
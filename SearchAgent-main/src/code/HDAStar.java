@@ -0,0 +1,269 @@
+package code;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash-distributed A* (HDA*). Every state is owned by one worker thread, chosen by its Zobrist hash, and
+ * only its owner keeps it in an open list and remembers its best path cost. A worker expands the best node
+ * of its own open list and sends every successor to the inbox of the successor's owner, a lock-free queue
+ * that any worker may add to and only the owner polls.
+ * <p>
+ * Workers keep expanding until no open list has a node cheaper than the best goal found so far (the
+ * incumbent). The bound is the path cost alone rather than path cost plus heuristic, since our heuristics
+ * count actions, not deaths, and can overestimate the cost of reaching a goal. For the same reason a node
+ * that is not cheaper than the incumbent is dropped rather than ending the work of its worker: nodes behind
+ * it in the open list can still be cheaper. Step costs are never negative, so a dropped node could not have
+ * led to a cheaper goal.
+ * <p>
+ * The search ends when every worker is idle and no successor is on its way to an inbox, which is tracked by
+ * a single counter of active workers plus messages in flight: a message is counted before it is sent, and
+ * only active workers send, so once the counter reaches zero nothing can wake a worker again. An idle worker
+ * parks until a message is sent to it or the counter reaches zero.
+ * <p>
+ * Open lists are ordered like in Search: by deaths plus heuristic, then by kills.
+ */
+
+public class HDAStar {
+
+    /**
+     * Longest an idle worker parks before it looks at the budget and the cancellation again.
+     */
+    private static final long PARK_NANOS = 1_000_000;
+
+    private final Matrix _problem;
+    private final int _heuristicNum;
+    private final SearchBudget _budget;
+    private final Worker[] _workers;
+
+    /**
+     * work: active workers plus messages in flight, the search is over at zero.
+     * incumbent: cheapest goal node found so far.
+     * failure: the first exception thrown by a worker, which stops all of them.
+     * stop: the first budget limit a worker ran into, which also stops all of them.
+     * expanded: nodes expanded by all workers, checked against the budget.
+     */
+
+    private final AtomicInteger _work = new AtomicInteger();
+    private final AtomicInteger _expanded = new AtomicInteger();
+    private final AtomicReference<SearchStatus> _stop = new AtomicReference<>();
+    private final AtomicReference<Node<MatrixState, MatrixOperator>> _incumbent = new AtomicReference<>();
+    private final AtomicReference<Exception> _failure = new AtomicReference<>();
+
+    /**
+     * @param heuristicNum 0 for uniform cost search, 1 or 2 for the A* heuristics
+     */
+    public HDAStar(Matrix problem, int heuristicNum, SearchOptions options) {
+        _problem = problem;
+        _heuristicNum = heuristicNum;
+        _budget = options.getBudget();
+        _workers = new Worker[Math.max(1, options.getParallelism())];
+        for (int i = 0; i < _workers.length; i++) _workers[i] = new Worker();
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * The expansion limit of the budget holds for all workers together. The frontier and visited limits are
+     * checked by every worker against its own open list and states, times the number of workers.
+     *
+     * @return the cheapest goal node found, with the statistics of all workers added up
+     */
+    public SearchResult<MatrixState, MatrixOperator> search(Node<MatrixState, MatrixOperator> root) throws IOException, ClassNotFoundException {
+        _work.set(_workers.length + 1);
+        owner(root.getState()).inbox.add(root);
+
+        Thread[] threads = new Thread[_workers.length];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(_workers[i], "hda-worker-" + i);
+            _workers[i].thread = threads[i];
+        }
+        for (Thread thread : threads) thread.start();
+
+        int expandedNodes = 0;
+        int peakFrontier = 0;
+        int visited = 0;
+        for (int i = 0; i < threads.length; i++) {
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                _failure.compareAndSet(null, e);
+            }
+            expandedNodes += _workers[i].expandedNodes;
+            peakFrontier += _workers[i].peakFrontier;
+            visited += _workers[i].best.size();
+        }
+
+        Exception failure = _failure.get();
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure instanceof ClassNotFoundException) throw (ClassNotFoundException) failure;
+        if (failure != null) throw new IllegalStateException(failure);
+
+        if (_stop.get() != null) return new SearchResult<>(_stop.get(), null, expandedNodes, peakFrontier, visited);
+        Node<MatrixState, MatrixOperator> goal = _incumbent.get();
+        SearchStatus status = goal != null ? SearchStatus.SOLVED : SearchStatus.FAILED;
+        return new SearchResult<>(status, goal, expandedNodes, peakFrontier, visited);
+    }
+
+    /**
+     * @return true if a worker failed or ran into the budget, or the search was cancelled
+     */
+    private boolean stopped() {
+        if (_failure.get() != null || _stop.get() != null) return true;
+        if (!_budget.getCancellation().isCancelled()) return false;
+        _stop.compareAndSet(null, SearchStatus.CANCELLED);
+        return true;
+    }
+
+    /**
+     * Unparks every worker, so they see that the search is over.
+     */
+    private void wakeAll() {
+        for (Worker worker : _workers) LockSupport.unpark(worker.thread);
+    }
+
+    private Worker owner(MatrixState s) {
+        long hash = s.getHash();
+        return _workers[Math.floorMod((int) (hash ^ (hash >>> 32)), _workers.length)];
+    }
+
+    /**
+     * @return true if node may still lead to a goal cheaper than the incumbent
+     */
+    private boolean promising(Node<MatrixState, MatrixOperator> node) {
+        Node<MatrixState, MatrixOperator> incumbent = _incumbent.get();
+        return incumbent == null || node.getCost() < incumbent.getCost();
+    }
+
+    /**
+     * Makes goal the incumbent if it is cheaper than the current one.
+     */
+    private void offerGoal(Node<MatrixState, MatrixOperator> goal) {
+        Node<MatrixState, MatrixOperator> incumbent;
+        do {
+            incumbent = _incumbent.get();
+            if (incumbent != null && goal.getCost() >= incumbent.getCost()) return;
+        } while (!_incumbent.compareAndSet(incumbent, goal));
+    }
+
+    /**
+     * One worker and the states it owns. Only inbox is touched by other threads.
+     * open: nodes to expand, best first. Nodes superseded by a cheaper path stay in it and are skipped.
+     * best: the cheapest path cost known for every state reached, see Node.packCost.
+     * peakFrontier: largest size of open.
+     * thread: the thread running the worker, unparked when a message is sent to it.
+     */
+    private class Worker implements Runnable {
+        final ConcurrentLinkedQueue<Node<MatrixState, MatrixOperator>> inbox = new ConcurrentLinkedQueue<>();
+        final PriorityQueue<Node<MatrixState, MatrixOperator>> open =
+                new PriorityQueue<>(Search.BY_COST_AND_HEURISTIC);
+        final HashMap<MatrixState, Long> best = new HashMap<>();
+        int expandedNodes;
+        int peakFrontier;
+        Thread thread;
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped()) {
+                    receive();
+
+                    peakFrontier = Math.max(peakFrontier, open.size());
+                    Node<MatrixState, MatrixOperator> head = open.poll();
+                    if (head == null) {
+                        // nothing left to expand: wait for successors or for the end
+                        if (!idle()) return;
+                        continue;
+                    }
+
+                    // skip nodes that cannot beat the incumbent, or that a cheaper path to their state has
+                    // superseded
+                    if (promising(head) && head.getCost() <= best.get(head.getState())) expand(head);
+                }
+            } catch (Exception e) {
+                _failure.compareAndSet(null, e);
+                wakeAll();
+            }
+        }
+
+        /**
+         * Moves the inbox to the open list, keeping only nodes that are cheaper than every known path to their
+         * state.
+         */
+        private void receive() {
+            Node<MatrixState, MatrixOperator> node;
+            while ((node = inbox.poll()) != null) {
+                Long known = best.get(node.getState());
+                if ((known == null || node.getCost() < known) && promising(node)) {
+                    best.put(node.getState(), node.getCost());
+                    open.add(node);
+                }
+                _work.decrementAndGet();
+            }
+        }
+
+        private void expand(Node<MatrixState, MatrixOperator> head) throws IOException, ClassNotFoundException {
+            int workers = _workers.length;
+            // claim the expansion first, so that workers checking at the same time see each other's
+            int expanded = _expanded.incrementAndGet() - 1;
+            SearchStatus stop = _budget.check(expanded, (open.size() + 1) * workers, best.size() * workers);
+            if (stop != null) {
+                _stop.compareAndSet(null, stop);
+                wakeAll();
+                return;
+            }
+            expandedNodes++;
+
+            if (_problem.isGoal(head.getState())) {
+                offerGoal(head);
+                return;
+            }
+
+            for (Successor<MatrixState, MatrixOperator, int[]> next : _problem.expand(head)) {
+                MatrixOperator a = next.getAction();
+                MatrixState possibleState = next.getState();
+                int[] cost = next.getStepCost();
+                float heuristic = _heuristicNum == 0 ? 0 : Search.asHeuristic(_problem, possibleState, _heuristicNum);
+                Node<MatrixState, MatrixOperator> child = new Node<>(possibleState, head, a,
+                        head.getDeaths() + cost[0], head.getKills() + cost[1], heuristic, head.getDepth() + 1);
+                if (!promising(child)) continue;
+
+                // counted before it is sent, so the search cannot end while it is on its way
+                _work.incrementAndGet();
+                Worker receiver = owner(possibleState);
+                receiver.inbox.add(child);
+                if (receiver != this) LockSupport.unpark(receiver.thread);
+            }
+        }
+
+        /**
+         * Stops counting this worker as active until a message arrives.
+         *
+         * @return true if a message arrived, false if the search is over
+         */
+        private boolean idle() {
+            if (_work.decrementAndGet() == 0) {
+                wakeAll();
+                return false;
+            }
+            while (!stopped()) {
+                if (!inbox.isEmpty()) {
+                    _work.incrementAndGet();
+                    return true;
+                }
+                if (_work.get() == 0) return false;
+
+                // a sender unparks this worker after adding to its inbox, and the timeout catches a
+                // cancellation or deadline nobody signals
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package code;
+
+import java.util.HashSet;
+
+/**
+ * Duplicate detection for any problem, through the equals and hashCode of its states. Matrix searches use
+ * VisitedSet or DominanceSet instead, which keep states packed.
+ *
+ * @param <State> state type
+ */
+
+public class HashStateSet<State> implements StateSet<State> {
+
+    private final HashSet<State> _states = new HashSet<>();
+
+    // ============================Additional-Methods===========================
+
+    @Override
+    public boolean add(State s) {
+        return _states.add(s);
+    }
+
+    @Override
+    public boolean contains(State s) {
+        return _states.contains(s);
+    }
+
+    @Override
+    public int size() {
+        return _states.size();
+    }
+}
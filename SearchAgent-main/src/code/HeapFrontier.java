@@ -0,0 +1,41 @@
+package code;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * A frontier backed by a binary heap. Works for any ordering, including fractional priorities.
+ *
+ * @param <N> node type
+ */
+
+public class HeapFrontier<N> implements Frontier<N> {
+
+    private final PriorityQueue<N> _queue;
+
+    public HeapFrontier(Comparator<? super N> comparator) {
+        _queue = new PriorityQueue<>(comparator);
+    }
+
+    // ============================Additional-Methods===========================
+
+    @Override
+    public void add(N node) {
+        _queue.add(node);
+    }
+
+    @Override
+    public N poll() {
+        return _queue.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _queue.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return _queue.size();
+    }
+}
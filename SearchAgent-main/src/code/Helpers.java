@@ -23,6 +23,16 @@ public class Helpers {
         return locs;
     }
 
+    /**
+     * Replaces every location of locs by its canonical instance in layout.
+     */
+
+    private static void internAll(ArrayList<Location> locs, GridLayout layout) {
+        for (int i = 0; i < locs.size(); i++) {
+            locs.set(i, layout.intern(locs.get(i)));
+        }
+    }
+
     /**
      * Takes grid string and deduces the initial state
      *
@@ -47,12 +57,6 @@ public class Helpers {
         String[] tbStr = segments[3].split(",");
         Location tbLoc = new Location(Integer.parseInt(tbStr[0]), Integer.parseInt(tbStr[1]));
 
-        //agent locations
-        ArrayList<Location> agents = stringToLocArray(segments[4]);
-
-        //pill locations
-        ArrayList<Location> pills = stringToLocArray(segments[5]);
-
         //pad locations
         ArrayList<Location> padArr = stringToLocArray(segments[6]);
         HashMap<Location, Location> pads = new HashMap<>();
@@ -61,13 +65,25 @@ public class Helpers {
             pads.put(padArr.get(i), padArr.get(i + 1));
         }
 
+        //static part of the grid, every location below is one of its canonical instances
+        GridLayout layout = new GridLayout(dims, tbLoc, pads);
+        neoLoc = layout.intern(neoLoc);
+
+        //agent locations
+        ArrayList<Location> agents = stringToLocArray(segments[4]);
+        internAll(agents, layout);
+
+        //pill locations
+        ArrayList<Location> pills = stringToLocArray(segments[5]);
+        internAll(pills, layout);
+
         //hostages
         String[] hostageStr = segments[7].split(",");
         ArrayList<Hostage> hostages = new ArrayList<>();
 
         int hostageId = 0;
         for (int i = 0; i < hostageStr.length - 2; i += 3) {
-            Location hostageLoc = new Location(Integer.parseInt(hostageStr[i]), Integer.parseInt(hostageStr[i + 1]));
+            Location hostageLoc = layout.location(Integer.parseInt(hostageStr[i]), Integer.parseInt(hostageStr[i + 1]));
             Hostage hostage = new Hostage(hostageLoc, Integer.parseInt(hostageStr[i + 2]), false);
             hostage.setId(hostageId++);
 
@@ -76,39 +92,13 @@ public class Helpers {
 
         Neo neo = new Neo(neoLoc, 0, c);
 
-        return new MatrixState(dims, neo, hostages, agents, pads, pills, tbLoc);
+        return new MatrixState(layout, neo, hostages, agents, pills);
     }
 
     public static int randInt(int min, int max) {
         return ThreadLocalRandom.current().nextInt(min, max + 1);
     }
 
-    public static boolean hostage98(Location neo, ArrayList<Hostage> hostages, MatrixOperator operator) {
-        Location temp;
-        switch (operator) {
-            case UP:
-                temp = new Location(neo.getX() - 1, neo.getY());
-                break;
-            case DOWN:
-                temp = new Location(neo.getX() + 1, neo.getY());
-                break;
-            case LEFT:
-                temp = new Location(neo.getX(), neo.getY() - 1);
-                break;
-            case RIGHT:
-                temp = new Location(neo.getX(), neo.getY() + 1);
-                break;
-            default:
-                temp = null;
-        }
-        for (Hostage h : hostages) {
-            if (h.getLocation().equals(temp) && h.getDamage() >= 98) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Constructs the output string of the solve method.
      *
@@ -173,11 +163,11 @@ public class Helpers {
         ret.append(";");
 
         // Deaths
-        ret.append(goal.getPathCost()[0]);
+        ret.append(goal.getDeaths());
         ret.append(";");
 
         // Kills
-        ret.append(goal.getPathCost()[1]);
+        ret.append(goal.getKills());
         ret.append(";");
 
         // Expanded Nodes
@@ -200,8 +190,8 @@ public class Helpers {
 
         ret.append("========================NODE-AT-DEPTH-" + head.getDepth() + "========================\n");
         ret.append("ACTION: ").append(head.getAction() == null ? "NOP" : head.getAction().name())
-                .append(", ").append("PATH COST: [").append(head.getPathCost()[0])
-                .append(", ").append(head.getPathCost()[1]).append("], ")
+                .append(", ").append("PATH COST: [").append(head.getDeaths())
+                .append(", ").append(head.getKills()).append("], ")
                 .append("HEURISTIC: ").append(head.getHeuristic()).append("\n\n")
                 .append(head.getState()).append("\n");
 
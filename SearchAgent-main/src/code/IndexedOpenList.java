@@ -0,0 +1,162 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * The open and closed lists of a best-first search in one structure. Every state ever reached has an entry,
+ * found through a hash index, holding the best node found for it so far. Open entries also sit in a binary
+ * heap and know their position in it, so a better path to a queued state updates its node in place
+ * (decrease-key) instead of queueing a duplicate, and a better path to an expanded state puts it back in
+ * the heap (reopening).
+ *
+ * @param <K> state type, used as the key of the index
+ * @param <N> node type
+ */
+
+public class IndexedOpenList<K, N> {
+
+    private static final int CLOSED = -1;
+
+    /**
+     * One entry per reached state. heapIndex is its position in the heap, CLOSED once it was polled.
+     */
+    private static class Entry<N> {
+        N node;
+        int heapIndex;
+
+        Entry(N node) {
+            this.node = node;
+        }
+    }
+
+    private final Comparator<? super N> _comparator;
+    private final HashMap<K, Entry<N>> _index = new HashMap<>();
+    private final ArrayList<Entry<N>> _heap = new ArrayList<>();
+    private int _reopenings;
+
+    public IndexedOpenList(Comparator<? super N> comparator) {
+        _comparator = comparator;
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    /**
+     * @return the number of times a closed state was put back in the heap
+     */
+    public int getReopenings() {
+        return _reopenings;
+    }
+
+    /**
+     * @return the number of open states
+     */
+    public int size() {
+        return _heap.size();
+    }
+
+    /**
+     * @return the number of states reached, open or closed
+     */
+    public int states() {
+        return _index.size();
+    }
+
+    public boolean isEmpty() {
+        return _heap.isEmpty();
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * @return the best node found so far for state, open or closed, null if the state was never reached
+     */
+    public N get(K state) {
+        Entry<N> e = _index.get(state);
+        return e == null ? null : e.node;
+    }
+
+    /**
+     * Makes node the best known node of state and queues it. The caller decides whether node is better than
+     * get(state).
+     * <ul>
+     * <li>new state: the node is pushed.</li>
+     * <li>open state: the queued node is replaced and moved up or down the heap.</li>
+     * <li>closed state: the state is reopened.</li>
+     * </ul>
+     */
+    public void put(K state, N node) {
+        Entry<N> e = _index.get(state);
+        if (e == null) {
+            e = new Entry<>(node);
+            _index.put(state, e);
+            push(e);
+        } else if (e.heapIndex == CLOSED) {
+            e.node = node;
+            _reopenings++;
+            push(e);
+        } else {
+            e.node = node;
+            if (!siftUp(e.heapIndex)) siftDown(e.heapIndex);
+        }
+    }
+
+    /**
+     * Removes the best open node and closes its state. The list must not be empty.
+     *
+     * @return the best open node
+     */
+    public N poll() {
+        Entry<N> top = _heap.get(0);
+        Entry<N> last = _heap.remove(_heap.size() - 1);
+        if (last != top) {
+            set(0, last);
+            siftDown(0);
+        }
+        top.heapIndex = CLOSED;
+        return top.node;
+    }
+
+    private void push(Entry<N> e) {
+        _heap.add(e);
+        e.heapIndex = _heap.size() - 1;
+        siftUp(e.heapIndex);
+    }
+
+    private void set(int i, Entry<N> e) {
+        _heap.set(i, e);
+        e.heapIndex = i;
+    }
+
+    /**
+     * @return true if the entry at i moved
+     */
+    private boolean siftUp(int i) {
+        Entry<N> e = _heap.get(i);
+        int start = i;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            Entry<N> p = _heap.get(parent);
+            if (_comparator.compare(p.node, e.node) <= 0) break;
+            set(i, p);
+            i = parent;
+        }
+        set(i, e);
+        return i != start;
+    }
+
+    private void siftDown(int i) {
+        Entry<N> e = _heap.get(i);
+        int half = _heap.size() >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < _heap.size()
+                    && _comparator.compare(_heap.get(child + 1).node, _heap.get(child).node) < 0) child++;
+            if (_comparator.compare(e.node, _heap.get(child).node) <= 0) break;
+            set(i, _heap.get(child));
+            i = child;
+        }
+        set(i, e);
+    }
+}
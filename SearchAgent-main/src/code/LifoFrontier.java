@@ -0,0 +1,36 @@
+package code;
+
+import java.util.ArrayDeque;
+
+/**
+ * A last-in first-out frontier, which makes the kernel a depth-first search.
+ *
+ * @param <N> node type
+ */
+
+public class LifoFrontier<N> implements Frontier<N> {
+
+    private final ArrayDeque<N> _stack = new ArrayDeque<>();
+
+    // ============================Additional-Methods===========================
+
+    @Override
+    public void add(N node) {
+        _stack.addLast(node);
+    }
+
+    @Override
+    public N poll() {
+        return _stack.pollLast();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _stack.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return _stack.size();
+    }
+}
@@ -1,11 +1,10 @@
 package code;
 
-import java.io.Serializable;
-import java.util.Objects;
-
 /**
  * A class representing a discrete point on our grid. 0-indexed,
  * starting from the bottom left of the grid (0, 0). position cannot be negative.
+ * Locations are immutable. Inside a problem there is one canonical instance per cell (see GridLayout),
+ * so states share them instead of allocating new ones.
  */
 
 public class Location {
@@ -15,8 +14,8 @@ public class Location {
      * _y: vertical position
      */
 
-    private int _x;
-    private int _y;
+    private final int _x;
+    private final int _y;
 
     public Location(int x, int y){
         _x = x;
@@ -32,14 +31,6 @@ public class Location {
         return _y;
     }
 
-    public void setX(int x) {
-        _x = x;
-    }
-
-    public void setY(int y) {
-        _y = y;
-    }
-
     // ============================Additional-Methods===========================
 
     /**
@@ -60,12 +51,13 @@ public class Location {
     // ==========================Equality-and-Hashing==========================
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) return true; // canonical instances
         Location l = (Location) obj;
         return (_x == l.getX()) && (_y == l.getY());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(_x, _y);
+        return 31 * _x + _y;
     }
 }
@@ -0,0 +1,61 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of longs. Used as the frontier of arena searches, where a node is its slot index
+ * packed together with its priority, so the frontier holds no objects.
+ */
+
+public class LongHeap {
+
+    private long[] _heap = new long[1 << 10];
+    private int _size;
+
+    // ==========================Getters-and-Setters==========================
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    // ============================Additional-Methods===========================
+
+    public void add(long value) {
+        if (_size == _heap.length) _heap = Arrays.copyOf(_heap, _size * 2);
+
+        int i = _size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (_heap[parent] <= value) break;
+            _heap[i] = _heap[parent];
+            i = parent;
+        }
+        _heap[i] = value;
+    }
+
+    /**
+     * Removes the smallest value. The heap must not be empty.
+     *
+     * @return the smallest value
+     */
+    public long poll() {
+        long min = _heap[0];
+        long last = _heap[--_size];
+
+        int i = 0;
+        int half = _size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < _size && _heap[child + 1] < _heap[child]) child++;
+            if (last <= _heap[child]) break;
+            _heap[i] = _heap[child];
+            i = child;
+        }
+        _heap[i] = last;
+        return min;
+    }
+}
@@ -0,0 +1,206 @@
+package code;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The matrix problem with macro operators. Besides the actions that are not moves, Neo can walk along a
+ * shortest path to any point of interest: the booth, a hostage to carry, a pill, a pad, or a cell next to
+ * something to kill. A walk is a single step of the search, so plans are a handful of macros deep instead of
+ * dozens of moves, and Matrix.walk applies the damage of all of its moves at once.
+ * <p>
+ * Walks are found by a breadth-first search from Neo that knows when every hostage starts blocking its cell,
+ * so a walk only enters cells that are free at the time Neo gets there, and is legal like the moves it is
+ * made of. Since a walk always ends where there is something to do, a walk never follows another one.
+ * <p>
+ * The macro search is not complete: Neo only takes one shortest path to a point of interest, and never walks
+ * a longer way round or stops elsewhere. Plans found are valid, and unfold turns them back into moves.
+ */
+
+public class MacroMatrix extends SearchProblem<MatrixState, MacroOperator, int[]> {
+
+    private static final MatrixOperator[] MOVES = {MatrixOperator.RIGHT, MatrixOperator.LEFT,
+            MatrixOperator.DOWN, MatrixOperator.UP};
+
+    private final Matrix _matrix;
+    private final GridLayout _layout;
+
+    public MacroMatrix(Matrix matrix) {
+        super();
+        _matrix = matrix;
+        _layout = matrix.getLayout();
+        initialState = matrix.getInitialState();
+    }
+
+    // ==========================Main-Methods==========================
+
+    @Override
+    public ArrayList<MacroOperator> actions(Node<MatrixState, MacroOperator> n) {
+        MatrixState s = n.getState();
+        MacroOperator last = n.getAction();
+
+        // the matrix forbids some actions after others, so it is asked with the last action Neo performed
+        Node<MatrixState, MatrixOperator> view = new Node<>(s, null, last == null ? null : last.getLast(),
+                0, 0, 0, 0);
+        ArrayList<MacroOperator> operators = new ArrayList<>();
+        for (MatrixOperator a : _matrix.actions(view)) {
+            if (!isMove(a)) operators.add(MacroOperator.single(a));
+        }
+
+        if (s.getNeo().getDamage() < 100 && (last == null || !last.isWalk())) addWalks(s, operators);
+        return operators;
+    }
+
+    @Override
+    public MatrixState result(MatrixState s, MacroOperator a) throws IOException, ClassNotFoundException {
+        if (a.isWalk()) return _matrix.walk(s, a.getSteps());
+        return _matrix.result(s, a.getLast());
+    }
+
+    @Override
+    public boolean isGoal(MatrixState s) {
+        return _matrix.isGoal(s);
+    }
+
+    @Override
+    public int[] stepCost(MatrixState s1, MacroOperator a, MatrixState s2) {
+        if (a.isWalk()) return _matrix.walkCost(s1, a.getSteps().length);
+        return _matrix.stepCost(s1, a.getLast(), s2);
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Adds a walk to every point of interest Neo can reach, in the order a breadth-first search reaches them.
+     */
+    private void addWalks(MatrixState s, ArrayList<MacroOperator> operators) {
+        int cellCount = _layout.cells();
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = s.getHostageCells();
+        int[] damage = s.getHostageDamage();
+        boolean[] carried = s.getHostageCarried();
+        boolean[] removed = s.getHostageRemoved();
+
+        // steps after which a hostage that is not carried blocks its cell (damage of 98), and can be killed
+        // (damage of 100). Carried hostages move with Neo and never block the way.
+        int[] blocksAfter = new int[cellCount];
+        int[] turnsAfter = new int[cellCount];
+        Arrays.fill(blocksAfter, Integer.MAX_VALUE);
+        Arrays.fill(turnsAfter, Integer.MAX_VALUE);
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i] || carried[i]) continue;
+            int c = cells[i];
+            if (damage[i] >= 98) blocksAfter[c] = 0;
+            else if (c != booth) blocksAfter[c] = Math.min(blocksAfter[c], (99 - damage[i]) / 2);
+            if (c == booth) continue;
+            if (damage[i] >= 100) turnsAfter[c] = 0;
+            else turnsAfter[c] = Math.min(turnsAfter[c], (101 - damage[i]) / 2);
+        }
+
+        int start = _layout.cell(s.getNeo().getLocation());
+        int[] distance = new int[cellCount];
+        MatrixOperator[] reachedBy = new MatrixOperator[cellCount];
+        Arrays.fill(distance, -1);
+        distance[start] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            Location l = _layout.location(cell);
+            for (MatrixOperator m : MOVES) {
+                Location next = _layout.neighbour(l, m);
+                if (next == null) continue;
+                int c = _layout.cell(next);
+
+                // the step into c starts after distance[cell] steps
+                if (distance[c] >= 0 || s.hasAgent(next) || blocksAfter[c] <= distance[cell]) continue;
+                distance[c] = distance[cell] + 1;
+                reachedBy[c] = m;
+                queue.add(c);
+
+                if (isInteresting(s, next, distance[c], turnsAfter)) {
+                    operators.add(MacroOperator.walk(path(c, distance[c], reachedBy)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param steps number of steps Neo needs to reach l
+     * @return true if Neo has something to do at l once there
+     */
+    private boolean isInteresting(MatrixState s, Location l, int steps, int[] turnsAfter) {
+        if (l.equals(_layout.getTeleBoothLoc()) || s.hasPill(l) || _layout.isPad(l)) return true;
+
+        // the hostage is still alive, since Neo could not have entered its cell otherwise
+        if (s.getNeo().canCarry() && s.hasWaitingHostage(l)) return true;
+
+        for (MatrixOperator m : MOVES) {
+            Location next = _layout.neighbour(l, m);
+            if (next != null && (s.hasAgent(next) || turnsAfter[_layout.cell(next)] <= steps)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the moves of the path the breadth-first search reached cell by
+     */
+    private MatrixOperator[] path(int cell, int length, MatrixOperator[] reachedBy) {
+        MatrixOperator[] moves = new MatrixOperator[length];
+        Location l = _layout.location(cell);
+        for (int i = length - 1; i >= 0; i--) {
+            moves[i] = reachedBy[_layout.cell(l)];
+            l = _layout.neighbour(l, opposite(moves[i]));
+        }
+        return moves;
+    }
+
+    private static boolean isMove(MatrixOperator a) {
+        return a == MatrixOperator.UP || a == MatrixOperator.DOWN || a == MatrixOperator.LEFT
+                || a == MatrixOperator.RIGHT;
+    }
+
+    private static MatrixOperator opposite(MatrixOperator m) {
+        switch (m) {
+            case UP:
+                return MatrixOperator.DOWN;
+            case DOWN:
+                return MatrixOperator.UP;
+            case LEFT:
+                return MatrixOperator.RIGHT;
+            default:
+                return MatrixOperator.LEFT;
+        }
+    }
+
+    /**
+     * Replays the macros of a plan one action at a time, so the plan can be printed and checked like any other.
+     *
+     * @param goal goal node of the macro search, or null
+     * @return the goal node of the same plan made of MatrixOperators, with the same deaths and kills. null for
+     * null.
+     */
+    public Node<MatrixState, MatrixOperator> unfold(Node<MatrixState, MacroOperator> goal)
+            throws IOException, ClassNotFoundException {
+        if (goal == null) return null;
+        ArrayDeque<MacroOperator> macros = new ArrayDeque<>();
+        for (Node<MatrixState, MacroOperator> n = goal; n.getParent() != null; n = n.getParent()) {
+            macros.push(n.getAction());
+        }
+
+        Node<MatrixState, MatrixOperator> node = new Node<>();
+        node.setState(initialState);
+        for (MacroOperator macro : macros) {
+            for (MatrixOperator a : macro.getSteps()) {
+                MatrixState s = _matrix.result(node.getState(), a);
+                int[] cost = _matrix.stepCost(node.getState(), a, s);
+                node = new Node<>(s, node, a, node.getDeaths() + cost[0], node.getKills() + cost[1], 0,
+                        node.getDepth() + 1);
+            }
+        }
+        return node;
+    }
+}
@@ -0,0 +1,61 @@
+package code;
+
+/**
+ * An action of MacroMatrix: a walk to a point of interest along a shortest path, or a single action that is
+ * not a move. Either way it is a sequence of MatrixOperators, which the plan is unfolded into.
+ */
+
+public class MacroOperator {
+
+    /**
+     * The single actions, by ordinal, shared by every state.
+     */
+    private static final MacroOperator[] SINGLE = new MacroOperator[MatrixOperator.values().length];
+
+    static {
+        for (MatrixOperator a : MatrixOperator.values()) {
+            SINGLE[a.ordinal()] = new MacroOperator(new MatrixOperator[]{a}, false);
+        }
+    }
+
+    /**
+     * steps: the actions, in the order Neo performs them.
+     * walk: whether the steps are moves to a point of interest.
+     */
+
+    private final MatrixOperator[] _steps;
+    private final boolean _walk;
+
+    private MacroOperator(MatrixOperator[] steps, boolean walk) {
+        _steps = steps;
+        _walk = walk;
+    }
+
+    /**
+     * @param moves movement operators, at least one
+     */
+    public static MacroOperator walk(MatrixOperator[] moves) {
+        return new MacroOperator(moves, true);
+    }
+
+    public static MacroOperator single(MatrixOperator a) {
+        return SINGLE[a.ordinal()];
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    public MatrixOperator[] getSteps() {
+        return _steps;
+    }
+
+    public boolean isWalk() {
+        return _walk;
+    }
+
+    /**
+     * @return the last action Neo performs
+     */
+    public MatrixOperator getLast() {
+        return _steps[_steps.length - 1];
+    }
+}
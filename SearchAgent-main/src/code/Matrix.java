@@ -9,6 +9,37 @@ import java.util.*;
 
 public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
 
+    /**
+     * The four movement operators, in the order their neighbours are checked.
+     */
+    private static final MatrixOperator[] MOVES = {MatrixOperator.RIGHT, MatrixOperator.LEFT,
+            MatrixOperator.DOWN, MatrixOperator.UP};
+
+    /**
+     * The static part of the grid, shared with every state of this problem.
+     */
+    private GridLayout _layout;
+
+    /**
+     * Packs states of this problem into longs. Built from the initial state since the number of
+     * hostages, agents, and pills never grows.
+     */
+    private MatrixStateEncoder _encoder;
+
+    /**
+     * Zobrist keys of this problem, used by result to update state hashes incrementally.
+     */
+    private ZobristKeys _zobrist;
+
+    /**
+     * Distance fields of this problem, see GridLayout.distancesTo. Built once by setInitialState.
+     * boothDistance: actions from every cell to the booth.
+     * hostageDistance: actions from every cell to the initial cell of every hostage, which is where a hostage
+     * is as long as it is neither carried nor saved.
+     */
+    private int[] _boothDistance;
+    private int[][] _hostageDistance;
+
     /**
      * Initialize a matrix problem with a given initial state
      *
@@ -16,7 +47,7 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
      */
     public Matrix(MatrixState i) {
         super();
-        initialState = i;
+        setInitialState(i);
     }
 
     /**
@@ -144,15 +175,24 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
      */
 
     public static String solve(String grid, String strategy, boolean visualize) throws IOException, ClassNotFoundException {
+        return solve(grid, strategy, visualize, new SearchOptions());
+    }
+
+    /**
+     * Same as solve(grid, strategy, visualize), with optional search settings.
+     *
+     * @param options optional settings, see SearchOptions
+     */
+    public static String solve(String grid, String strategy, boolean visualize, SearchOptions options)
+            throws IOException, ClassNotFoundException {
 
         MatrixState currentState = Helpers.parseGrid(grid); //initial state
         Matrix problem = new Matrix(currentState); //initialize problem
 
         //solve the problem
-        Object[] searchRes = Search.searchProcedure(problem, strategy);
-        Node<MatrixState, MatrixOperator> goalNode = null;
-        int expandedNodes = (int) searchRes[1];
-        if (searchRes[0] != null) goalNode = (Node<MatrixState, MatrixOperator>) searchRes[0];
+        SearchResult<MatrixState, MatrixOperator> searchRes = Search.searchProcedure(problem, strategy, options);
+        Node<MatrixState, MatrixOperator> goalNode = searchRes.getGoal();
+        int expandedNodes = searchRes.getExpandedNodes();
 
 
         //output string
@@ -171,63 +211,50 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
         //TODO: Moataz
         if(s.getNeo().getDamage()>=100)return operators;
         Location neo_loc = s.getNeo().getLocation();
-        Location dims = s.getGridDims();   //////////////// dims should be the location of the last cell in the grid (top right cell)
-        ArrayList<Location> agents = s.getAgentLocs();  /// locations of the remaining agents in the matrix
-        ArrayList<Hostage> hostages = s.getHostages(); //=== current hostages
-        ArrayList<Location> pil_loc = s.getPillLocs(); //== pills locations
-        HashMap<Location, Location> fly_loc = s.getPadLocs(); //== fly pads locations
+        Location booth = _layout.getTeleBoothLoc();
         //=============movement=============
-
-
-        if (n.getAction() != MatrixOperator.LEFT && neo_loc.getY() < dims.getY() - 1 && !agents.contains(new Location(neo_loc.getX(), neo_loc.getY() + 1))
-                && !Helpers.hostage98(neo_loc, hostages, MatrixOperator.RIGHT)) {
+        // neighbours are canonical locations, null outside the grid. A neighbour is blocked by an agent or a
+        // hostage about to turn
+        Location right = _layout.neighbour(neo_loc, MatrixOperator.RIGHT);
+        Location left = _layout.neighbour(neo_loc, MatrixOperator.LEFT);
+        Location down = _layout.neighbour(neo_loc, MatrixOperator.DOWN);
+        Location up = _layout.neighbour(neo_loc, MatrixOperator.UP);
+
+        if (n.getAction() != MatrixOperator.LEFT && right != null && !s.isBlocked(right)) {
             operators.add(MatrixOperator.RIGHT);
         }
-        if (n.getAction() != MatrixOperator.RIGHT && neo_loc.getY() > 0 && !agents.contains(new Location(neo_loc.getX(), neo_loc.getY() - 1))
-                && !Helpers.hostage98(neo_loc, hostages, MatrixOperator.LEFT)) {
+        if (n.getAction() != MatrixOperator.RIGHT && left != null && !s.isBlocked(left)) {
             operators.add(MatrixOperator.LEFT);
         }
-        if (n.getAction() != MatrixOperator.UP && neo_loc.getX() < dims.getX() - 1 && !agents.contains(new Location(neo_loc.getX() + 1, neo_loc.getY())) && !Helpers.hostage98(neo_loc, hostages, MatrixOperator.DOWN)) {
+        if (n.getAction() != MatrixOperator.UP && down != null && !s.isBlocked(down)) {
             operators.add(MatrixOperator.DOWN);
         }
-        if (n.getAction() != MatrixOperator.DOWN && neo_loc.getX() > 0 && !agents.contains(new Location(neo_loc.getX() - 1, neo_loc.getY())) && !Helpers.hostage98(neo_loc, hostages, MatrixOperator.UP)) {
+        if (n.getAction() != MatrixOperator.DOWN && up != null && !s.isBlocked(up)) {
             operators.add(MatrixOperator.UP);
         }
         //================== hostage==============
-        for (Hostage h : hostages) {
-            if (h.getLocation().equals(neo_loc) && h.getDamage() < 100 && !h.isCarried() && s.getNeo().getCurrentCapacity() > 0 && !neo_loc.equals(s.getTeleBoothLoc()) && !operators.contains(MatrixOperator.CARRY)) {
-                operators.add(MatrixOperator.CARRY);
-
-            }
-
-            if (h.isCarried() && neo_loc.equals(s.getTeleBoothLoc()) && !operators.contains(MatrixOperator.DROP)) {
-                operators.add(MatrixOperator.DROP);
-
-            }
+        if (s.getNeo().canCarry() && !neo_loc.equals(booth) && s.hasWaitingHostage(neo_loc)) {
+            operators.add(MatrixOperator.CARRY);
+        }
 
-            if (h.getDamage() >= 100 && !h.isCarried() && h.getLocation().adjacent(neo_loc) && !h.getLocation().equals(s.getTeleBoothLoc()) && !operators.contains(MatrixOperator.KILL)) {
-                operators.add(MatrixOperator.KILL);
-            }
+        // capacity only drops while hostages are carried
+        if (neo_loc.equals(booth) && s.getNeo().getCurrentCapacity() < s.getNeo().getOriginalCapacity()) {
+            operators.add(MatrixOperator.DROP);
         }
 
-        //=================kill all agents in neighbouring cells===============
-        for (Location l : agents) {
-        	if (neo_loc.adjacent(l) && !operators.contains(MatrixOperator.KILL)) {
-        		operators.add(MatrixOperator.KILL);
-        		break;
-        	}
+        //=================kill all agents and turned hostages in neighbouring cells===============
+        if ((right != null && s.isKillable(right)) || (left != null && s.isKillable(left))
+                || (down != null && s.isKillable(down)) || (up != null && s.isKillable(up))) {
+            operators.add(MatrixOperator.KILL);
         }
         //================ take a pill=======================================
 
-        for (Location l : pil_loc) {
-            if (neo_loc.equals(l)) {
-                operators.add(MatrixOperator.TAKE_PILL);
-                break;
-            }
+        if (s.hasPill(neo_loc)) {
+            operators.add(MatrixOperator.TAKE_PILL);
         }
         //================ fly =======================================
 
-        if (fly_loc.containsKey(neo_loc) && n.getAction() != MatrixOperator.FLY) {
+        if (_layout.isPad(neo_loc) && n.getAction() != MatrixOperator.FLY) {
             operators.add(MatrixOperator.FLY);
         }
         return operators;
@@ -243,45 +270,54 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
         //take a pill to know which pill and update neo health + all alive carried hostages
         //fly to know which pad and update neo location with all the carried hostages
         MatrixState res = s.copy();
-        Location new_loc;
-        ArrayList<Hostage> host_loc = res.getHostages();
+        apply(res, a);
+
+        //================================ updating the world =============================
+        // update the damage of a hostage iff
+        // he is not at the TB
+        // he is a not a turned hostage
+        // not dead and carried by neo
+        //Equivalent to
+        // all alive hostages that are not at the TB
+        ZobristKeys z = _zobrist;
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = res.getHostageCells();
+        int[] damage = res.getHostageDamage();
+        boolean[] carried = res.getHostageCarried();
+        boolean[] removed = res.getHostageRemoved();
+        for (int i = 0; i < cells.length; i++)//Hostage damage +2 after action
+        {
+            if (!removed[i] && damage[i] < 100 && (cells[i] != booth || carried[i])) {
+                damage[i] += 2;
+                if (damage[i] >= 100) res.toggleHash(z.hostageDead(i)); // hostage just turned
+            }
+
+        }
+        res.updateHostageBoards();
+
+
+        return res;
+    }
+
+    /**
+     * Applies what action a does to res itself, before the hostages take the damage of the step.
+     *
+     * @return the number of agents and turned hostages killed
+     */
+    private int apply(MatrixState res, MatrixOperator a) {
+        ZobristKeys z = _zobrist;
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = res.getHostageCells();
+        int[] damage = res.getHostageDamage();
+        boolean[] carried = res.getHostageCarried();
+        boolean[] removed = res.getHostageRemoved();
+        int kills = 0;
         switch (a) {
             case UP:
-                new_loc = new Location(res.getNeo().getLocation().getX() - 1, res.getNeo().getLocation().getY());
-                res.getNeo().setLocation(new_loc);
-                for (Hostage h : host_loc) {
-                    if (h.isCarried()) {
-                        h.setLocation(new_loc);
-                    }
-
-                }
-                break;
             case DOWN:
-                new_loc = new Location(res.getNeo().getLocation().getX() + 1, res.getNeo().getLocation().getY());
-                res.getNeo().setLocation(new_loc);
-                for (Hostage h : host_loc) {
-                    if (h.isCarried()) {
-                        h.setLocation(new_loc);
-                    }
-                }
-                break;
             case LEFT:
-                new_loc = new Location(res.getNeo().getLocation().getX(), res.getNeo().getLocation().getY() - 1);
-                res.getNeo().setLocation(new_loc);
-                for (Hostage h : host_loc) {
-                    if (h.isCarried()) {
-                        h.setLocation(new_loc);
-                    }
-                }
-                break;
             case RIGHT:
-                new_loc = new Location(res.getNeo().getLocation().getX(), res.getNeo().getLocation().getY() + 1);
-                res.getNeo().setLocation(new_loc);
-                for (Hostage h : host_loc) {
-                    if (h.isCarried()) {
-                        h.setLocation(new_loc);
-                    }
-                }
+                moveNeo(res, _layout.neighbour(res.getNeo().getLocation(), a));
                 break;
             case CARRY:
                 // i can carry a hostage if
@@ -290,10 +326,13 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
                 // he is not at the TB *
                 // neo can carry -> in actions
                 // is not carried *
-                for (Hostage h : host_loc) {
-                    if (h.getLocation().equals(res.getNeo().getLocation()) && !h.getLocation().equals(res.getTeleBoothLoc()) && !h.isCarried() && h.getDamage() < 100) {
-                        h.setCarried(true);
+                int neoCell = _layout.cell(res.getNeo().getLocation());
+                for (int i = 0; i < cells.length; i++) {
+                    if (!removed[i] && cells[i] == neoCell && cells[i] != booth && !carried[i] && damage[i] < 100) {
+                        carried[i] = true;
+                        res.toggleHash(z.hostageCarried(i) ^ z.capacity(res.getNeo().getCurrentCapacity()));
                         res.getNeo().decCurrentCapacity();
+                        res.toggleHash(z.capacity(res.getNeo().getCurrentCapacity()));
                         break;
                     }
                 }
@@ -304,12 +343,13 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
                 // i am carrying hostages
                 //what will happen
                 // all carried hostages will be dropped AND neo c will increment
-                if (res.getNeo().getLocation().equals(res.getTeleBoothLoc())) {
-                    for (Hostage h : host_loc) {
-                        if (h.isCarried()) {
-                            h.setCarried(false);
+                if (res.getNeo().getLocation().equals(_layout.getTeleBoothLoc())) {
+                    for (int i = 0; i < cells.length; i++) {
+                        if (!removed[i] && carried[i]) {
+                            carried[i] = false;
+                            res.toggleHash(z.hostageCarried(i) ^ z.capacity(res.getNeo().getCurrentCapacity()));
                             res.getNeo().incCurrentCapacity();
-
+                            res.toggleHash(z.capacity(res.getNeo().getCurrentCapacity()));
                         }
                     }
                 }
@@ -321,22 +361,21 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
                 // what will happen
                 // my health AND the Health of all alive hostages will increment
                 // remove the pill from the world
-                ArrayList<Location> pillLocs = res.getPillLocs();
-                for (int i = pillLocs.size() - 1; i >= 0; i--) {
-                    Location l = pillLocs.get(i);
-                    if (l.equals(res.getNeo().getLocation())) {
-                    	int newDamageN= res.getNeo().getDamage() - 20 <0?0:res.getNeo().getDamage() - 20;
-                        res.getNeo().setDamage(newDamageN);//should not be below zero
-
-                        for (Hostage h : host_loc) {
-                            if (!h.getLocation().equals(res.getTeleBoothLoc()) && h.isAlive()) {
-                            	int newDamageH= h.getDamage() - 20 <0?0:h.getDamage() - 20;
-                                h.setDamage(newDamageH-2);
-
-                            }
+                Location pillLoc = res.getNeo().getLocation();
+                if (res.hasPill(pillLoc)) {
+                    int newDamageN= res.getNeo().getDamage() - 20 <0?0:res.getNeo().getDamage() - 20;
+                    res.toggleHash(z.neoDamage(res.getNeo().getDamage()) ^ z.neoDamage(newDamageN));
+                    res.getNeo().setDamage(newDamageN);//should not be below zero
+
+                    for (int i = 0; i < cells.length; i++) {
+                        if (!removed[i] && cells[i] != booth && damage[i] < 100) {
+                            int newDamageH= damage[i] - 20 <0?0:damage[i] - 20;
+                            damage[i] = newDamageH-2;
+
                         }
-                        res.removePill(l);
                     }
+                    res.removePill(pillLoc);
+                    res.toggleHash(z.pill(pillLoc));
                 }
                 break;
 
@@ -345,80 +384,184 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
                 //he is an adjacent agent
                 //he is adjacent turned hostage
                 //FOR ALL ADJECENT AGENTS AND TURNED HOSTAGEE  remove these agents+hostages form the game and update neo health
+                res.toggleHash(z.neoDamage(res.getNeo().getDamage()) ^ z.neoDamage(res.getNeo().getDamage() + 20));
                 res.getNeo().setDamage(res.getNeo().getDamage() + 20);
 
-                ArrayList<Location> agentLocs = res.getAgentLocs();
-                for (int i = agentLocs.size() - 1; i >= 0; i--) {
-                    Location l = agentLocs.get(i);
+                for (MatrixOperator direction : MOVES) {
+                    Location l = _layout.neighbour(res.getNeo().getLocation(), direction);
 
-                    if (l.adjacent(res.getNeo().getLocation())) {
+                    if (l != null && res.hasAgent(l)) {
                         res.removeAgent(l);
+                        res.toggleHash(z.agent(l));
+                        kills++;
                     }
                 }
-//			  for(Location l : res.getAgentLocs())
-//			    {
-//			    	if(l.adjacent(res.getNeo().getLocation()))
-//			    	{
-//			    		res.removeAgent(l);
-//			    	}
-//			    }
-
-                ArrayList<Hostage> hostages = res.getHostages();
-                for (int i = hostages.size() - 1; i >= 0; i--) {
-                    Hostage h = hostages.get(i);
-                    if (!h.isAlive() && h.getLocation().adjacent(res.getNeo().getLocation()) && !h.getLocation().equals(res.getTeleBoothLoc())) {
-                        res.removeHostage(h);
+
+                for (int i = 0; i < cells.length; i++) {
+                    if (!removed[i] && damage[i] >= 100 && cells[i] != booth
+                            && _layout.location(cells[i]).adjacent(res.getNeo().getLocation())) {
+                        res.toggleHash(z.hostageRemoved(res, i)); // before removing, it XORs out the hostage's features
+                        res.removeHostage(i);
+                        kills++;
                     }
                 }
                 break;
             case FLY:
-                HashMap<Location, Location> pads = res.getPadLocs();
+                HashMap<Location, Location> pads = _layout.getPadLocs();
                 if (pads.containsKey(res.getNeo().getLocation())) {
-                    Location loc = pads.get(res.getNeo().getLocation());
-                    res.getNeo().setLocation(loc);
-                    for (Hostage h : host_loc) {
-                        if (h.isCarried()) {
-                            h.setLocation(loc);
-                        }
-                    }
-
+                    moveNeo(res, pads.get(res.getNeo().getLocation()));
                 }
                 break;
             default:
         }
 
-        //================================ updating the world =============================
-        // update the damage of a hostage iff
-        // he is not at the TB
-        // he is a not a turned hostage
-        // not dead and carried by neo
-        //Equivalent to
-        // all alive hostages that are not at the TB
-        for (Hostage h : res.getHostages())//Hostage damage +2 after action
-        {
-            if (!h.getLocation().equals(res.getTeleBoothLoc()) && h.isAlive() || (h.getLocation().equals(res.getTeleBoothLoc()) && h.isAlive() && h.isCarried())) {
-                h.setDamage(h.getDamage() + 2);
+        return kills;
+    }
+
+    /**
+     * Generates the successors of n with their step costs in one pass over its state, instead of one result
+     * and one stepCost per action. Moves, CARRY, KILL and FLY hurt the same hostages by the same amount, since
+     * they only move carried hostages, pick up one away from the booth, or remove turned ones. So the damage
+     * after the step and the deaths it causes are worked out once and copied into each of their successors.
+     * DROP and TAKE_PILL change who gets hurt, and go through result. Kills are counted by apply.
+     */
+    @Override
+    public ArrayList<Successor<MatrixState, MatrixOperator, int[]>> expand(Node<MatrixState, MatrixOperator> n)
+            throws IOException, ClassNotFoundException {
+        ArrayList<MatrixOperator> actions = actions(n);
+        ArrayList<Successor<MatrixState, MatrixOperator, int[]>> successors = new ArrayList<>(actions.size());
+        if (actions.isEmpty()) return successors;
+
+        MatrixState s = n.getState();
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = s.getHostageCells();
+        int[] damage = s.getHostageDamage();
+        boolean[] carried = s.getHostageCarried();
+        boolean[] removed = s.getHostageRemoved();
+
+        // damage after the step, hash keys of the hostages it turns, and deaths as stepCost counts them
+        int[] ticked = damage.clone();
+        long turning = 0;
+        int deaths = 0;
+        int dropDeaths = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i]) continue;
+            if (damage[i] == 98 || damage[i] == 99) {
+                deaths++;
+                if (!carried[i]) dropDeaths++;
+            }
+            if (damage[i] < 100 && (cells[i] != booth || carried[i])) {
+                ticked[i] += 2;
+                if (ticked[i] >= 100) turning ^= _zobrist.hostageDead(i);
+            }
+        }
+
+        for (MatrixOperator a : actions) {
+            if (a == MatrixOperator.DROP || a == MatrixOperator.TAKE_PILL) {
+                int[] cost = new int[]{a == MatrixOperator.DROP ? dropDeaths : 0, 0};
+                successors.add(new Successor<>(a, result(s, a), cost));
+                continue;
             }
 
+            MatrixState res = s.copy();
+            int kills = apply(res, a);
+            System.arraycopy(ticked, 0, res.getHostageDamage(), 0, ticked.length);
+            res.toggleHash(turning);
+            res.updateHostageBoards();
+            successors.add(new Successor<>(a, res, new int[]{deaths, kills}));
         }
+        return successors;
+    }
 
+    /**
+     * Moves Neo and every carried hostage to loc, keeping the state hash up to date.
+     *
+     * @param res state to modify
+     * @param loc Neo's new location
+     */
+    private void moveNeo(MatrixState res, Location loc) {
+        res.toggleHash(_zobrist.neoCell(res.getNeo().getLocation()) ^ _zobrist.neoCell(loc));
+        res.getNeo().setLocation(loc);
+        int cell = _layout.cell(loc);
+        int[] cells = res.getHostageCells();
+        boolean[] carried = res.getHostageCarried();
+        boolean[] removed = res.getHostageRemoved();
+        for (int i = 0; i < cells.length; i++) {
+            if (!removed[i] && carried[i]) {
+                res.toggleHash(_zobrist.hostageCell(i, cells[i]) ^ _zobrist.hostageCell(i, cell));
+                cells[i] = cell;
+            }
+        }
+    }
 
+    /**
+     * The state result would reach by applying moves one after the other, with the damage of all the steps
+     * dealt to the hostages at once. Every move must be legal at the time Neo makes it (see MacroMatrix).
+     *
+     * @param moves movement operators
+     */
+    public MatrixState walk(MatrixState s, MatrixOperator[] moves) {
+        MatrixState res = s.copy();
+        Location loc = res.getNeo().getLocation();
+        for (MatrixOperator m : moves) loc = _layout.neighbour(loc, m);
+        moveNeo(res, loc);
+
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = res.getHostageCells();
+        int[] damage = res.getHostageDamage();
+        boolean[] carried = res.getHostageCarried();
+        boolean[] removed = res.getHostageRemoved();
+        for (int i = 0; i < cells.length; i++) {
+            if (!removed[i] && damage[i] < 100 && (cells[i] != booth || carried[i])) {
+                // +2 per step, and no more once turned
+                damage[i] += 2 * Math.min(moves.length, (101 - damage[i]) / 2);
+                if (damage[i] >= 100) res.toggleHash(_zobrist.hostageDead(i));
+            }
+        }
+        res.updateHostageBoards();
         return res;
     }
 
+    /**
+     * The sum of stepCost over the steps of walk(s, moves), from s and the number of moves alone. Moves kill
+     * no one, and a hostage counts as a death at every step that starts with its damage at 98 or 99.
+     *
+     * @param steps number of moves
+     */
+    public int[] walkCost(MatrixState s, int steps) {
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = s.getHostageCells();
+        int[] damage = s.getHostageDamage();
+        boolean[] carried = s.getHostageCarried();
+        boolean[] removed = s.getHostageRemoved();
+        int deaths = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i] || damage[i] >= 100) continue;
+            if (cells[i] != booth || carried[i]) {
+                // damage grows by 2 per step, so it is 98 or 99 at one step at most
+                if ((99 - damage[i]) / 2 < steps) deaths++;
+            } else if (damage[i] >= 98) {
+                deaths += steps; // a hostage left at the booth keeps its damage
+            }
+        }
+        return new int[]{deaths, 0};
+    }
+
     @Override
     public boolean isGoal(MatrixState s) {
         //TODO: Ali
         int neoDamage = s.getNeo().getDamage(); //get neo damage
         boolean damageLess = neoDamage < 100; // check damage is less than 100
         Location neoLoc = s.getNeo().getLocation(); // get neo location
-        Location telephoneBooth = s.getTeleBoothLoc(); //get booth location
+        Location telephoneBooth = _layout.getTeleBoothLoc(); //get booth location
         boolean nAtBooth = neoLoc.equals(telephoneBooth); // check if neo is at booth
         boolean hostagesAtBooth = true;
 
-        for (Hostage hostage : s.getHostages()) {
-            Location hostageLoc = hostage.getLocation(); //get location of hostage
-            if (!(hostageLoc.equals(telephoneBooth)&& !hostage.isCarried()))//check is a hostage is at the booth
+        int booth = _layout.cell(telephoneBooth);
+        int[] cells = s.getHostageCells();
+        for (int i = 0; i < cells.length; i++) {
+            if (s.getHostageRemoved()[i]) continue;
+            if (!(cells[i] == booth && !s.getHostageCarried()[i]))//check is a hostage is at the booth
             {
                 hostagesAtBooth = false;
                 break; //there exists a hostage that hasn't been saved
@@ -431,11 +574,14 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
     @Override
     public int[] stepCost(MatrixState s1, MatrixOperator a, MatrixState s2) {
         int[] cost = new int[]{0, 0};
+        int[] cells = s1.getHostageCells();
+        int[] damage = s1.getHostageDamage();
+        boolean[] removed = s1.getHostageRemoved();
         //TODO: Ali
         if (a != (MatrixOperator.TAKE_PILL))//check if the agent didn't take pill (if he did no hostage will die)
         {
-            for (Hostage h : s1.getHostages()) {
-                if ((h.getDamage() == 98 || h.getDamage() == 99) && (a != MatrixOperator.DROP || !h.isCarried()))// check if the damage will become 100 in the new state
+            for (int i = 0; i < cells.length; i++) {
+                if (!removed[i] && (damage[i] == 98 || damage[i] == 99) && (a != MatrixOperator.DROP || !s1.getHostageCarried()[i]))// check if the damage will become 100 in the new state
                 {
                     cost[0]++; // increment the number of killed hostages
                 }
@@ -444,15 +590,16 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
         int killedHostages=0;
         if(a==MatrixOperator.KILL)
         {
-        	for (Hostage h : s1.getHostages()) {
-                if (s1.getNeo().getLocation().adjacent(h.getLocation()) && !h.isAlive() && (!h.getLocation().equals(s1.getTeleBoothLoc())))// check if the damage will become 100 in the new state
+        	int booth = _layout.cell(_layout.getTeleBoothLoc());
+        	for (int i = 0; i < cells.length; i++) {
+                if (!removed[i] && damage[i] >= 100 && cells[i] != booth && s1.getNeo().getLocation().adjacent(_layout.location(cells[i])))// check if the damage will become 100 in the new state
                 {
                     killedHostages++; // increment the number of killed hostages
                 }
             }
         }
-        int s1AgentsCount = s1.getAgentLocs().size(); //get number of ALIVE agents in old state(s1)
-        int s2AgentsCount = s2.getAgentLocs().size(); //get number of ALIVE agents in new state(s2)
+        int s1AgentsCount = s1.agentCount(); //get number of ALIVE agents in old state(s1)
+        int s2AgentsCount = s2.agentCount(); //get number of ALIVE agents in new state(s2)
         cost[1] = s1AgentsCount - s2AgentsCount + killedHostages; // number of agents killed as result of doing action a
         return cost;
     }
@@ -463,12 +610,16 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
             return 0;
         }
         float cost=0;
-        Location tBooth = s.getTeleBoothLoc(); //get telephone booth location
-        ArrayList<Hostage> hostages = s.getHostages(); //get hostages
+        Location tBooth = _layout.getTeleBoothLoc(); //get telephone booth location
+        int booth = _layout.cell(tBooth);
+        int[] cells = s.getHostageCells(); //get hostages
+        int[] damage = s.getHostageDamage();
+        boolean[] removed = s.getHostageRemoved();
         float minKillOp = 0; //minimum number of kill operations required (to kill the hostages turned into agents)
 
-        for (Hostage h : hostages) {
-            if (!h.getLocation().equals(tBooth) && h.getDamage() == 100) //check if this hostage has turned into agent
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i]) continue;
+            if (cells[i] != booth && damage[i] == 100) //check if this hostage has turned into agent
             {
                 minKillOp++; //must kill agent
             }
@@ -488,12 +639,16 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
             return 0;
         }
     	int cost = 0;
-        Location tBooth = s.getTeleBoothLoc(); //get telephone booth location
-        ArrayList<Hostage> hostages = s.getHostages(); //get hostages
+        Location tBooth = _layout.getTeleBoothLoc(); //get telephone booth location
+        int booth = _layout.cell(tBooth);
+        int[] cells = s.getHostageCells(); //get hostages
+        int[] damage = s.getHostageDamage();
+        boolean[] removed = s.getHostageRemoved();
         int minKillOp = 0; //minimum number of kill operations required (to kill the hostages turned into agents)
-        for (Hostage h : hostages) {
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i]) continue;
            
-            if (!h.getLocation().equals(tBooth) && h.getDamage() == 100) //check if this hostage has turned into agent
+            if (cells[i] != booth && damage[i] == 100) //check if this hostage has turned into agent
             {
                 minKillOp++; //must kill agent
             }
@@ -517,17 +672,21 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
             return 0;
         }
         int cost = 0;
-        Location tBooth = s.getTeleBoothLoc(); //get telephone booth location
-        ArrayList<Hostage> hostages = s.getHostages(); //get hostages
+        Location tBooth = _layout.getTeleBoothLoc(); //get telephone booth location
+        int booth = _layout.cell(tBooth);
+        int[] cells = s.getHostageCells(); //get hostages
+        int[] damage = s.getHostageDamage();
+        boolean[] removed = s.getHostageRemoved();
         int nCarryOp = 0; //number of carry operations needed to save all unsaved and alive hostages
         int minKillOp = 0; //minimum number of kill operations required (to kill the hostages turned into agents)
 
-        for (Hostage h : hostages) {
-            if (!h.getLocation().equals(tBooth) && h.getDamage() < 100) //check if this hostage is alive and unsaved
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i]) continue;
+            if (cells[i] != booth && damage[i] < 100) //check if this hostage is alive and unsaved
             {
                 nCarryOp++; //hostage requires a carry operation
             }
-            if (!h.getLocation().equals(tBooth) && h.getDamage() == 100) //check if this hostage has turned into agent
+            if (cells[i] != booth && damage[i] == 100) //check if this hostage has turned into agent
             {
                 minKillOp++; //must kill agent
             }
@@ -553,12 +712,16 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
             return 0;
         }
         int cost = 0;
-        Location tBooth = s.getTeleBoothLoc(); //get telephone booth location
-        ArrayList<Hostage> hostages = s.getHostages(); //get hostages
+        Location tBooth = _layout.getTeleBoothLoc(); //get telephone booth location
+        int booth = _layout.cell(tBooth);
+        int[] cells = s.getHostageCells(); //get hostages
+        int[] damage = s.getHostageDamage();
+        boolean[] removed = s.getHostageRemoved();
         int minKillOp = 0; //minimum number of kill operations required (to kill the hostages turned into agents)
 
-        for (Hostage h : hostages) {
-            if (!h.getLocation().equals(tBooth) && h.getDamage() == 100) //check if this hostage has turned into agent
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i]) continue;
+            if (cells[i] != booth && damage[i] == 100) //check if this hostage has turned into agent
             {
                 minKillOp++; //must kill agent
             }
@@ -572,6 +735,73 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
 
 
 
+    /**
+     * A lower bound on the actions left, from the distance fields: Neo has to fetch every hostage that is
+     * neither saved nor turned, get next to every turned one to kill it, and end at the booth. The longest of
+     * these errands alone takes at least that many actions.
+     */
+    public int GreedyHeuristic3(MatrixState s) {
+        if (this.isGoal(s)) return 0;
+        return Math.max(1, actionsToGo(s));
+    }
+
+    /**
+     * A lower bound on the deaths left, unlike ASHeuristic1 and ASHeuristic2, which count actions: the alive
+     * hostages that would reach 100 damage before Neo could drop them at the booth, even if he went straight
+     * for them and took every pill left on the way.
+     */
+    public int ASHeuristic3(MatrixState s) {
+        if (this.isGoal(s)) return 0;
+        return doomedHostages(s);
+    }
+
+    private int actionsToGo(MatrixState s) {
+        int neo = _layout.cell(s.getNeo().getLocation());
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = s.getHostageCells();
+        int[] damage = s.getHostageDamage();
+        boolean[] carried = s.getHostageCarried();
+        boolean[] removed = s.getHostageRemoved();
+
+        int toGo = _boothDistance[neo];
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i]) continue;
+            if (carried[i]) {
+                toGo = Math.max(toGo, _boothDistance[neo] + 1); // back to the booth, drop
+            } else if (cells[i] != booth && damage[i] < 100) {
+                // to the hostage, carry, to the booth, drop
+                toGo = Math.max(toGo, _hostageDistance[i][neo] + 1 + _boothDistance[cells[i]] + 1);
+            } else if (cells[i] != booth) {
+                // next to the turned hostage, kill, from next to it to the booth
+                toGo = Math.max(toGo, _hostageDistance[i][neo] + _boothDistance[cells[i]] - 1);
+            }
+        }
+        return toGo;
+    }
+
+    /**
+     * @return the number of alive hostages bound to turn: every action until a hostage is dropped adds 2 to
+     * its damage, except pills, which take off 20 at most
+     */
+    private int doomedHostages(MatrixState s) {
+        int neo = _layout.cell(s.getNeo().getLocation());
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        int[] cells = s.getHostageCells();
+        int[] damage = s.getHostageDamage();
+        boolean[] carried = s.getHostageCarried();
+        boolean[] removed = s.getHostageRemoved();
+        int healing = 20 * Bitboard.count(s.getPills());
+
+        int doomed = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (removed[i] || damage[i] >= 100 || (cells[i] == booth && !carried[i])) continue;
+            int steps = carried[i] ? _boothDistance[neo]
+                    : _hostageDistance[i][neo] + 1 + _boothDistance[cells[i]];
+            if (damage[i] + 2 * steps - healing >= 100) doomed++;
+        }
+        return doomed;
+    }
+
     // ==========================Getters-and-Setters==========================
 
     public MatrixState getInitialState() {
@@ -580,5 +810,26 @@ public class Matrix extends SearchProblem<MatrixState, MatrixOperator, int[]> {
 
     public void setInitialState(MatrixState i) {
         initialState = i;
+        _layout = i.getLayout();
+        _encoder = new MatrixStateEncoder(i);
+        _zobrist = new ZobristKeys(i);
+        i.setHash(_zobrist.hash(i));
+
+        _boothDistance = _layout.distancesTo(_layout.cell(_layout.getTeleBoothLoc()));
+        int[] cells = i.getHostageCells();
+        _hostageDistance = new int[cells.length][];
+        for (int h = 0; h < cells.length; h++) _hostageDistance[h] = _layout.distancesTo(cells[h]);
+    }
+
+    public GridLayout getLayout() {
+        return _layout;
+    }
+
+    public MatrixStateEncoder getEncoder() {
+        return _encoder;
+    }
+
+    public ZobristKeys getZobrist() {
+        return _zobrist;
     }
 }
@@ -6,7 +6,6 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Objects;
 
 /**
  * A class representing a state of the world specific to the matrix problem. Contains enough information to
@@ -15,50 +14,125 @@ import java.util.Objects;
 
 public class MatrixState {
     /**
-     * The dimensions of our grid. Needed for a complete transition model. REMOVE
-     * IF PROVEN UNNECESSARY.
+     * The static part of the grid (dimensions, telephone booth, pads). Shared by every state of a problem,
+     * never copied, and left out of equality and hashing.
      */
-    private Location _gridDims;
+    private GridLayout _layout;
 
     /**
-     * A state should track the locations of all objects in the world, as
+     * A state should track the locations of all objects in the world that can change, as
      * long as they're relevant to the agent. In order, we track:
      * neoLoc: The location of Neo (player/agent).
-     * teleBoothLoc: Location of the telephone booth.
-     * hostageLocs: An array containing the locations of all hostages, turned or not.
-     * killed turned hostages are deleted from the array.
-     * agentLocs: Locations of all ALIVE agents. Dead agents are deleted from the array.
-     * padLocs: Locations of all pads;
-     * pillLocs: Locations of all UNTAKEN pills. Taken pills are deleted from the array
+     * hostages: cells, damage, and carried status of all hostages, turned or not (see below).
+     * agents: cells of all ALIVE agents. Dead agents are cleared from the bitboard.
+     * pills: cells of all UNTAKEN pills. Taken pills are cleared from the bitboard.
      * <p>
      * Additionally, we track the health of all hostages and neo, if a hostage is being carried, and the number of
      * hostages neo can currently carry.
      * <p>
-     * We delete killed turned hostages from the hostages array, since we don't need them to know
+     * Hostages are stored as parallel arrays indexed by hostage id (their order in the grid string), so
+     * copying a state is a handful of array copies and hostage loops walk contiguous memory:
+     * hostageCells: cell of each hostage. Carried hostages are in Neo's cell.
+     * hostageDamage: damage of each hostage. A hostage with 100 or more has turned.
+     * hostageCarried: whether Neo carries the hostage.
+     * hostageRemoved: killed turned hostages are flagged here, since we don't need them to know
      * the effects of our actions further down the tree.
      */
 
     private Neo _neo;
-    private ArrayList<Hostage> _hostages;
-    private ArrayList<Location> _agentLocs;
-    private HashMap<Location, Location> _padLocs;
-    private ArrayList<Location> _pillLocs;
-    private Location _teleBoothLoc;
+    private int[] _hostageCells;
+    private int[] _hostageDamage;
+    private boolean[] _hostageCarried;
+    private boolean[] _hostageRemoved;
+    private long[] _agents;
+    private long[] _pills;
+
+    /**
+     * Bitboards derived from the hostages so that legality checks are single bit tests. They are rebuilt
+     * by updateHostageBoards() whenever hostages change and take no part in equality.
+     * turned: cells holding a turned hostage that can be killed (dead, not carried, not at the booth).
+     * dying: cells holding a hostage with damage of at least 98. Neo cannot step into them.
+     * waiting: cells holding an alive hostage that is not being carried.
+     */
+
+    private long[] _turned;
+    private long[] _dying;
+    private long[] _waiting;
+
+    /**
+     * Zobrist hash of the state (see ZobristKeys). Set for the initial state by Matrix and kept up to date
+     * by Matrix.result, so hashing a state never walks its objects.
+     */
+
+    private long _hash;
 
     /**
      * onstructor. Be careful when passing objects to make sure they are passed
      * by value and not reference
      */
 
-    public MatrixState(Location gridDims, Neo neo, ArrayList<Hostage> hostages, ArrayList<Location> agentLocs,
-                       HashMap<Location, Location> padLocs, ArrayList<Location> pillLocs, Location teleBoothLoc) {
-        _gridDims = gridDims;
+    public MatrixState(GridLayout layout, Neo neo, ArrayList<Hostage> hostages, ArrayList<Location> agentLocs,
+                       ArrayList<Location> pillLocs) {
+        _layout = layout;
+        _neo = neo;
+
+        _hostageCells = new int[hostages.size()];
+        _hostageDamage = new int[hostages.size()];
+        _hostageCarried = new boolean[hostages.size()];
+        _hostageRemoved = new boolean[hostages.size()];
+        for (Hostage h : hostages) {
+            _hostageCells[h.getId()] = layout.cell(h.getLocation());
+            _hostageDamage[h.getId()] = h.getDamage();
+            _hostageCarried[h.getId()] = h.isCarried();
+        }
+
+        _agents = Bitboard.create(layout.cells());
+        for (Location a : agentLocs) Bitboard.set(_agents, layout.cell(a));
+
+        _pills = Bitboard.create(layout.cells());
+        for (Location p : pillLocs) Bitboard.set(_pills, layout.cell(p));
+
+        _turned = Bitboard.create(layout.cells());
+        _dying = Bitboard.create(layout.cells());
+        _waiting = Bitboard.create(layout.cells());
+        updateHostageBoards();
+    }
+
+    /**
+     * Builds a state from its hostage arrays and agent and pill bitboards, which are taken over rather than
+     * copied. Used by MatrixStateEncoder.decode.
+     */
+
+    MatrixState(GridLayout layout, Neo neo, int[] hostageCells, int[] hostageDamage, boolean[] hostageCarried,
+                boolean[] hostageRemoved, long[] agents, long[] pills) {
+        _layout = layout;
+        _neo = neo;
+        _hostageCells = hostageCells;
+        _hostageDamage = hostageDamage;
+        _hostageCarried = hostageCarried;
+        _hostageRemoved = hostageRemoved;
+        _agents = agents;
+        _pills = pills;
+
+        _turned = Bitboard.create(layout.cells());
+        _dying = Bitboard.create(layout.cells());
+        _waiting = Bitboard.create(layout.cells());
+        updateHostageBoards();
+    }
+
+    private MatrixState(MatrixState s, Neo neo) {
+        _layout = s._layout;
         _neo = neo;
-        _hostages = hostages;
-        _agentLocs = agentLocs;
-        _padLocs = padLocs;
-        _pillLocs = pillLocs;
-        _teleBoothLoc = teleBoothLoc;
+        _hostageCells = s._hostageCells.clone();
+        _hostageDamage = s._hostageDamage.clone();
+        _hostageCarried = s._hostageCarried.clone();
+        _hostageRemoved = s._hostageRemoved.clone();
+        _agents = s._agents.clone();
+        _pills = s._pills.clone();
+        _turned = s._turned.clone();
+        _dying = s._dying.clone();
+        _waiting = s._waiting.clone();
+        _hash = s._hash;
     }
 
     /**
@@ -66,23 +140,14 @@ public class MatrixState {
      */
 
     public MatrixState() {
-        _gridDims = new Location(0, 0);
-        _neo = new Neo(new Location(0, 0), 0, 0);
-        _hostages = new ArrayList<>();
-        _agentLocs = new ArrayList<>();
-        _padLocs = new HashMap<>();
-        _pillLocs = new ArrayList<>();
-        _teleBoothLoc = new Location(0, 0);
+        this(new GridLayout(new Location(1, 1), new Location(0, 0), new HashMap<>()),
+                new Neo(new Location(0, 0), 0, 0), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
     }
 
     // ==========================Getters-and-Setters==========================
 
-    public Location getGridDims() {
-        return _gridDims;
-    }
-
-    public void setGridDims(Location gridDims) {
-        _gridDims = gridDims;
+    public GridLayout getLayout() {
+        return _layout;
     }
 
     public Neo getNeo() {
@@ -93,44 +158,64 @@ public class MatrixState {
         _neo = neo;
     }
 
-    public ArrayList<Hostage> getHostages() {
-        return _hostages;
+    /**
+     * @return the number of hostages in the grid string, including removed ones
+     */
+    public int hostageCount() {
+        return _hostageCells.length;
+    }
+
+    public int[] getHostageCells() {
+        return _hostageCells;
+    }
+
+    public int[] getHostageDamage() {
+        return _hostageDamage;
+    }
+
+    public boolean[] getHostageCarried() {
+        return _hostageCarried;
     }
 
-    public void setHostages(ArrayList<Hostage> hostages) {
-        _hostages = hostages;
+    public boolean[] getHostageRemoved() {
+        return _hostageRemoved;
     }
 
-    public ArrayList<Location> getAgentLocs() {
-        return _agentLocs;
+    public long[] getAgents() {
+        return _agents;
     }
 
-    public void setAgentLocs(ArrayList<Location> agentLocs) {
-        _agentLocs = agentLocs;
+    public long[] getPills() {
+        return _pills;
     }
 
-    public HashMap<Location, Location> getPadLocs() {
-        return _padLocs;
+    public long[] getTurned() {
+        return _turned;
     }
 
-    public void setPadLocs(HashMap<Location, Location> padLocs) {
-        _padLocs = padLocs;
+    public long[] getDying() {
+        return _dying;
     }
 
-    public ArrayList<Location> getPillLocs() {
-        return _pillLocs;
+    public long[] getWaiting() {
+        return _waiting;
     }
 
-    public void setPillLocs(ArrayList<Location> pillLocs) {
-        _pillLocs = pillLocs;
+    public long getHash() {
+        return _hash;
     }
 
-    public Location getTeleBoothLoc() {
-        return _teleBoothLoc;
+    public void setHash(long hash) {
+        _hash = hash;
     }
 
-    public void setTeleBoothLoc(Location teleBoothLoc) {
-        _teleBoothLoc = teleBoothLoc;
+    /**
+     * XORs a Zobrist key into the hash of this state.
+     *
+     * @param key key of a feature being added or removed
+     */
+    public void toggleHash(long key) {
+        _hash ^= key;
     }
 
     // ============================Additional-Methods===========================
@@ -158,85 +243,96 @@ public class MatrixState {
 //    }
 
     public MatrixState copy() {
-        Location grid = new Location(this.getGridDims().getX(), this.getGridDims().getY());
-        Location neoLoc = new Location(this.getNeo().getLocation().getX(), this.getNeo().getLocation().getY());
-        Neo neo = new Neo(neoLoc, this.getNeo().getDamage(),
+        // locations are immutable canonical instances, so they are shared rather than copied
+        Neo neo = new Neo(this.getNeo().getLocation(), this.getNeo().getDamage(),
                 this.getNeo().getCurrentCapacity(), this.getNeo().getOriginalCapacity());
 
-        ArrayList<Hostage> hostages = new ArrayList<>();
-        for (Hostage h : this.getHostages()) {
-            Location newHLoc = new Location(h.getLocation().getX(), h.getLocation().getY());
-            Hostage newH = new Hostage(newHLoc, h.getDamage(), h.isCarried());
-            hostages.add(newH);
-        }
-
-        ArrayList<Location> agents = new ArrayList<>();
-        for (Location a : this.getAgentLocs()) {
-            Location newALoc = new Location(a.getX(), a.getY());
-            agents.add(newALoc);
-        }
-
-        ArrayList<Location> pills = new ArrayList<>();
-        for (Location p : this.getPillLocs()) {
-            Location newPLoc = new Location(p.getX(), p.getY());
-            pills.add(newPLoc);
-        }
-
-        return new MatrixState(grid, neo, hostages, agents, this.getPadLocs(),
-                pills, this.getTeleBoothLoc());
+        return new MatrixState(this, neo);
     }
 
     //====================
 
-    public void removeHostage(Hostage h) {
-        _hostages.remove(h); // removes by reference
+    public boolean isHostageAlive(int id) {
+        return _hostageDamage[id] < 100;
     }
 
-    public void removeHostage(int indx) {
-        _hostages.remove(indx);
+    public Location getHostageLocation(int id) {
+        return _layout.location(_hostageCells[id]);
     }
 
-    public void addHostage(Hostage h) {
-        _hostages.add(h);
+    public void removeHostage(int id) {
+        _hostageRemoved[id] = true;
     }
 
     //====================
 
-    public void removeAgent(Location a) {
-        _agentLocs.remove(a); // removes by reference
+    public boolean hasAgent(Location a) {
+        return Bitboard.get(_agents, _layout.cell(a));
     }
 
-    public void removeAgent(int indx) {
-        _agentLocs.remove(indx);
+    public void removeAgent(Location a) {
+        Bitboard.clear(_agents, _layout.cell(a));
     }
 
-    public void addAgent(Location a) {
-        _agentLocs.add(a);
+    public int agentCount() {
+        return Bitboard.count(_agents);
     }
 
     //====================
 
+    public boolean hasPill(Location p) {
+        return Bitboard.get(_pills, _layout.cell(p));
+    }
 
     public void removePill(Location p) {
-        _pillLocs.remove(p); // removes by reference
+        Bitboard.clear(_pills, _layout.cell(p));
     }
 
-    public void removePill(int indx) {
-        _pillLocs.remove(indx);
-    }
+    //====================
 
-    public void addPill(Location p) {
-        _pillLocs.add(p);
+    /**
+     * @return true if Neo cannot step into l because of an agent or a hostage about to turn
+     */
+    public boolean isBlocked(Location l) {
+        int cell = _layout.cell(l);
+        return ((_agents[cell >>> 6] | _dying[cell >>> 6]) & (1L << cell)) != 0;
     }
 
-    //====================
+    /**
+     * @return true if l holds an agent or a turned hostage that Neo can kill
+     */
+    public boolean isKillable(Location l) {
+        int cell = _layout.cell(l);
+        return ((_agents[cell >>> 6] | _turned[cell >>> 6]) & (1L << cell)) != 0;
+    }
 
-    public void removePad(Location p) {
-        _padLocs.remove(p); // removes by hash
+    /**
+     * @return true if l holds an alive hostage that is not carried
+     */
+    public boolean hasWaitingHostage(Location l) {
+        return Bitboard.get(_waiting, _layout.cell(l));
     }
 
-    public void addPad(Location src, Location dest) {
-        _padLocs.put(src, dest);
+    /**
+     * Rebuilds the turned, dying and waiting bitboards from the hostages. Call it after changing any
+     * hostage.
+     */
+    public void updateHostageBoards() {
+        Arrays.fill(_turned, 0);
+        Arrays.fill(_dying, 0);
+        Arrays.fill(_waiting, 0);
+
+        int booth = _layout.cell(_layout.getTeleBoothLoc());
+        for (int i = 0; i < _hostageCells.length; i++) {
+            if (_hostageRemoved[i]) continue;
+
+            int cell = _hostageCells[i];
+            if (_hostageDamage[i] >= 98) Bitboard.set(_dying, cell);
+            if (_hostageCarried[i]) continue;
+
+            if (_hostageDamage[i] < 100) Bitboard.set(_waiting, cell);
+            else if (cell != booth) Bitboard.set(_turned, cell);
+        }
     }
 
     // ================================Equality-and-Hashing=================================
@@ -246,28 +342,31 @@ public class MatrixState {
     public boolean equals(Object obj) {
         MatrixState m = (MatrixState) obj;
 
-        if (!this.getGridDims().equals(m.getGridDims())) return false;
-
+        // the layout is shared, only the dynamic part can differ
         if (!this.getNeo().equals(m.getNeo())) return false;
 
-        if (!this.getHostages().equals(m.getHostages())) return false;
-
-        if (!this.getAgentLocs().equals(m.getAgentLocs())) return false;
+        // hostages are equal if both were removed, or if they share cell, carried status, and being alive
+        for (int i = 0; i < _hostageCells.length; i++) {
+            if (_hostageRemoved[i] != m._hostageRemoved[i]) return false;
+            if (_hostageRemoved[i]) continue;
 
-        if (!this.getPadLocs().equals(m.getPadLocs())) return false;
+            if (_hostageCells[i] != m._hostageCells[i]) return false;
+            if (_hostageCarried[i] != m._hostageCarried[i]) return false;
+            if ((_hostageDamage[i] < 100) != (m._hostageDamage[i] < 100)) return false;
+        }
 
-        if (!this.getPillLocs().equals(m.getPillLocs())) return false;
+        if (!Arrays.equals(_agents, m.getAgents())) return false;
 
-        return this.getTeleBoothLoc().equals(m.getTeleBoothLoc());
+        return Arrays.equals(_pills, m.getPills());
     }
 
     /**
-     * Array would hash to the same code only if their order is the same.
-     * Don't mess up the order!
+     * Folds the Zobrist hash. Equal states have equal hashes as long as both were produced by the same
+     * Matrix problem.
      */
     @Override
     public int hashCode() {
-        return Objects.hash(_gridDims, _neo, _hostages, _agentLocs, _padLocs, _pillLocs, _teleBoothLoc);
+        return (int) (_hash ^ (_hash >>> 32));
     }
 
     /**
@@ -277,7 +376,8 @@ public class MatrixState {
     @Override
     public String toString() {
         StringBuilder grid = new StringBuilder();
-        String[][] info = new String[this.getGridDims().getX()][this.getGridDims().getY()];
+        Location dims = _layout.getGridDims();
+        String[][] info = new String[dims.getX()][dims.getY()];
         for(String[] row : info) Arrays.fill(row, "");
 
         Location neoLoc = this.getNeo().getLocation();
@@ -287,31 +387,36 @@ public class MatrixState {
 
         int maxlen = info[neoLoc.getX()][neoLoc.getY()].length();
 
-        for(Hostage h : this.getHostages()){
-            info[h.getLocation().getX()][h.getLocation().getY()] +=
-                    "H(" + h.getDamage() + (h.isCarried()? ", CARRIED);":");");
+        for(int i = 0; i < _hostageCells.length; i++){
+            if (_hostageRemoved[i]) continue;
+
+            Location h = getHostageLocation(i);
+            info[h.getX()][h.getY()] += "H(" + _hostageDamage[i] + (_hostageCarried[i]? ", CARRIED);":");");
 
-            maxlen = Math.max(maxlen, info[h.getLocation().getX()][h.getLocation().getY()].length());
+            maxlen = Math.max(maxlen, info[h.getX()][h.getY()].length());
         }
 
-        for(Location a : this.getAgentLocs()){
+        for(int c = Bitboard.next(_agents, 0); c >= 0; c = Bitboard.next(_agents, c + 1)){
+            Location a = _layout.location(c);
             info[a.getX()][a.getY()] += "A;";
             maxlen = Math.max(maxlen, info[a.getX()][a.getY()].length());
         }
 
-        for(Location p : this.getPillLocs()){
+        for(int c = Bitboard.next(_pills, 0); c >= 0; c = Bitboard.next(_pills, c + 1)){
+            Location p = _layout.location(c);
             info[p.getX()][p.getY()] += "P;";
             maxlen = Math.max(maxlen, info[p.getX()][p.getY()].length());
         }
 
-        for(Location p : this.getPadLocs().keySet()){
-            Location dest = this.getPadLocs().get(p);
+        for(Location p : _layout.getPadLocs().keySet()){
+            Location dest = _layout.getPadLocs().get(p);
             info[p.getX()][p.getY()] += "P(" + dest.getX() + "," + dest.getY() + ");";
             maxlen = Math.max(maxlen, info[p.getX()][p.getY()].length());
         }
 
-        info[this.getTeleBoothLoc().getX()][this.getTeleBoothLoc().getY()] += "TB;";
-        maxlen = Math.max(maxlen, info[this.getTeleBoothLoc().getX()][this.getTeleBoothLoc().getY()].length());
+        Location tbLoc = _layout.getTeleBoothLoc();
+        info[tbLoc.getX()][tbLoc.getY()] += "TB;";
+        maxlen = Math.max(maxlen, info[tbLoc.getX()][tbLoc.getY()].length());
 
         // Column numbers
         grid.append("    |");
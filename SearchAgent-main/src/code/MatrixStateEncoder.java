@@ -0,0 +1,294 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * Packs the dynamic part of a MatrixState into a fixed number of longs. The layout is computed once per
+ * problem from the initial state, so every state of that problem encodes to the same number of words.
+ */
+
+public class MatrixStateEncoder {
+
+    /**
+     * Bit layout, in order:
+     * neo: cell, damage, current capacity.
+     * hostages (one block per hostage id): cell, damage, dead, carried, removed.
+     * agents: one bit per agent of the initial state (in cell order), set while the agent is alive.
+     * pills: one bit per pill of the initial state (in cell order), set while the pill is untaken.
+     * <p>
+     * A field never straddles two words. The exact hostage damage is stored so that a state could be rebuilt
+     * from its words, but it is left out of the key mask: two states are the same visited state exactly when
+     * MatrixState.equals says so, and that only looks at whether a hostage is alive or dead.
+     */
+
+    private static final int NEO_DAMAGE_BITS = 8;
+    private static final int HOSTAGE_DAMAGE_BITS = 7;
+
+    private final GridLayout _layout;
+    private final int _cellBits;
+    private final int _capacityBits;
+    private final int _hostageCount;
+    private final int[] _agentIndex; // cell -> index in the initial agent list, -1 if none
+    private final int[] _pillIndex; // cell -> index in the initial pill list, -1 if none
+    private final int[] _agentCells; // index in the initial agent list -> cell
+    private final int[] _pillCells; // index in the initial pill list -> cell
+    private final int _originalCapacity;
+
+    private final int _neoCellOffset;
+    private final int _neoDamageOffset;
+    private final int _neoCapacityOffset;
+    private final int[] _hostageOffset; // bit offset of each hostage block
+    private final int _agentOffset;
+    private final int _pillOffset;
+    private final int _words;
+    private final long[] _keyMask;
+    private final long[] _dominanceMask; // the key mask without Neo's damage
+    private final long[] _removedMask; // every hostage flagged as removed
+
+    public MatrixStateEncoder(MatrixState initial) {
+        _layout = initial.getLayout();
+        _cellBits = bitsFor(_layout.cells() - 1);
+        _originalCapacity = initial.getNeo().getOriginalCapacity();
+        _capacityBits = bitsFor(_originalCapacity);
+        _hostageCount = initial.hostageCount();
+
+        _agentIndex = indexCells(initial.getAgents());
+        _pillIndex = indexCells(initial.getPills());
+        _agentCells = listCells(initial.getAgents());
+        _pillCells = listCells(initial.getPills());
+
+        int bit = 0;
+        _neoCellOffset = align(bit, _cellBits);
+        bit = _neoCellOffset + _cellBits;
+        _neoDamageOffset = align(bit, NEO_DAMAGE_BITS);
+        bit = _neoDamageOffset + NEO_DAMAGE_BITS;
+        _neoCapacityOffset = align(bit, _capacityBits);
+        bit = _neoCapacityOffset + _capacityBits;
+
+        _hostageOffset = new int[_hostageCount];
+        int hostageBits = _cellBits + HOSTAGE_DAMAGE_BITS + 3;
+        for (int i = 0; i < _hostageCount; i++) {
+            bit = align(bit, hostageBits);
+            _hostageOffset[i] = bit;
+            bit += hostageBits;
+        }
+
+        // agent and pill masks are written bit by bit, so they may span words
+        _agentOffset = bit;
+        bit += Bitboard.count(initial.getAgents());
+        _pillOffset = bit;
+        bit += Bitboard.count(initial.getPills());
+
+        _words = Math.max(1, (bit + 63) >>> 6);
+
+        // everything but the exact hostage damage takes part in equality
+        _keyMask = new long[_words];
+        _removedMask = new long[_words];
+        Arrays.fill(_keyMask, -1L);
+        for (int i = 0; i < _hostageCount; i++) {
+            int damageBit = _hostageOffset[i] + _cellBits;
+            _keyMask[damageBit >>> 6] &= ~(((1L << HOSTAGE_DAMAGE_BITS) - 1) << (damageBit & 63));
+            setBit(_removedMask, 0, removedBit(i));
+        }
+        _dominanceMask = _keyMask.clone();
+        _dominanceMask[_neoDamageOffset >>> 6] &= ~(((1L << NEO_DAMAGE_BITS) - 1) << (_neoDamageOffset & 63));
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    /**
+     * @return the number of longs a single encoded state occupies
+     */
+    public int words() {
+        return _words;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Writes the packed form of s into out, starting at offset. Exactly words() longs are written.
+     *
+     * @param s      state to encode
+     * @param out    destination array
+     * @param offset index of the first word to write
+     */
+
+    public void encode(MatrixState s, long[] out, int offset) {
+        // every block starts out flagged as removed, present hostages clear the flag
+        System.arraycopy(_removedMask, 0, out, offset, _words);
+
+        Neo neo = s.getNeo();
+        put(out, offset, _neoCellOffset, cell(neo.getLocation()));
+        put(out, offset, _neoDamageOffset, clamp(neo.getDamage(), NEO_DAMAGE_BITS));
+        put(out, offset, _neoCapacityOffset, neo.getCurrentCapacity());
+
+        int[] cells = s.getHostageCells();
+        int[] damage = s.getHostageDamage();
+        boolean[] carried = s.getHostageCarried();
+        boolean[] removed = s.getHostageRemoved();
+        for (int id = 0; id < _hostageCount; id++) {
+            if (removed[id]) continue;
+
+            int b = _hostageOffset[id];
+            put(out, offset, b, cells[id]);
+            put(out, offset, b + _cellBits, clamp(damage[id], HOSTAGE_DAMAGE_BITS));
+            if (damage[id] >= 100) setBit(out, offset, b + _cellBits + HOSTAGE_DAMAGE_BITS);
+            if (carried[id]) setBit(out, offset, b + _cellBits + HOSTAGE_DAMAGE_BITS + 1);
+            clearBit(out, offset, removedBit(id));
+        }
+
+        long[] agents = s.getAgents();
+        for (int c = Bitboard.next(agents, 0); c >= 0; c = Bitboard.next(agents, c + 1)) {
+            setBit(out, offset, _agentOffset + _agentIndex[c]);
+        }
+
+        long[] pills = s.getPills();
+        for (int c = Bitboard.next(pills, 0); c >= 0; c = Bitboard.next(pills, c + 1)) {
+            setBit(out, offset, _pillOffset + _pillIndex[c]);
+        }
+    }
+
+    /**
+     * Rebuilds a state from its packed form. The inverse of encode: the result is equal to the encoded
+     * state, hostage damage included. Its hash is left at 0 for the caller to set.
+     *
+     * @param in     source array
+     * @param offset index of the first word to read
+     * @return a new state of this encoder's problem
+     */
+
+    public MatrixState decode(long[] in, int offset) {
+        Neo neo = new Neo(_layout.location(get(in, offset, _neoCellOffset, _cellBits)),
+                get(in, offset, _neoDamageOffset, NEO_DAMAGE_BITS),
+                get(in, offset, _neoCapacityOffset, _capacityBits), _originalCapacity);
+
+        int[] cells = new int[_hostageCount];
+        int[] damage = new int[_hostageCount];
+        boolean[] carried = new boolean[_hostageCount];
+        boolean[] removed = new boolean[_hostageCount];
+        for (int id = 0; id < _hostageCount; id++) {
+            int b = _hostageOffset[id];
+            cells[id] = get(in, offset, b, _cellBits);
+            damage[id] = get(in, offset, b + _cellBits, HOSTAGE_DAMAGE_BITS);
+            carried[id] = get(in, offset, b + _cellBits + HOSTAGE_DAMAGE_BITS + 1, 1) != 0;
+            removed[id] = get(in, offset, removedBit(id), 1) != 0;
+        }
+
+        long[] agents = Bitboard.create(_layout.cells());
+        for (int i = 0; i < _agentCells.length; i++) {
+            if (get(in, offset, _agentOffset + i, 1) != 0) Bitboard.set(agents, _agentCells[i]);
+        }
+
+        long[] pills = Bitboard.create(_layout.cells());
+        for (int i = 0; i < _pillCells.length; i++) {
+            if (get(in, offset, _pillOffset + i, 1) != 0) Bitboard.set(pills, _pillCells[i]);
+        }
+
+        return new MatrixState(_layout, neo, cells, damage, carried, removed, agents, pills);
+    }
+
+    /**
+     * @return true if the encoded states at a[aOff] and b[bOff] represent equal states
+     */
+
+    public boolean keyEquals(long[] a, int aOff, long[] b, int bOff) {
+        for (int i = 0; i < _words; i++) {
+            if (((a[aOff + i] ^ b[bOff + i]) & _keyMask[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Orders encoded states by their key bits, so that equal states (see keyEquals) are next to each other once
+     * sorted.
+     *
+     * @return a negative number, zero, or a positive number as the state at a[aOff] comes before, is equal to, or
+     * comes after the state at b[bOff]
+     */
+
+    public int keyCompare(long[] a, int aOff, long[] b, int bOff) {
+        for (int i = 0; i < _words; i++) {
+            int c = Long.compareUnsigned(a[aOff + i] & _keyMask[i], b[bOff + i] & _keyMask[i]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the encoded states at a[aOff] and b[bOff] are equal except, possibly, for Neo's damage
+     */
+
+    public boolean dominanceKeyEquals(long[] a, int aOff, long[] b, int bOff) {
+        for (int i = 0; i < _words; i++) {
+            if (((a[aOff + i] ^ b[bOff + i]) & _dominanceMask[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    // ============================Helpers===========================
+
+    /**
+     * numbers the cells of a bitboard in increasing cell order.
+     */
+    private int[] indexCells(long[] board) {
+        int[] index = new int[_layout.cells()];
+        Arrays.fill(index, -1);
+        int i = 0;
+        for (int c = Bitboard.next(board, 0); c >= 0; c = Bitboard.next(board, c + 1)) {
+            index[c] = i++;
+        }
+        return index;
+    }
+
+    /**
+     * lists the cells of a bitboard in increasing cell order.
+     */
+    private static int[] listCells(long[] board) {
+        int[] cells = new int[Bitboard.count(board)];
+        int i = 0;
+        for (int c = Bitboard.next(board, 0); c >= 0; c = Bitboard.next(board, c + 1)) {
+            cells[i++] = c;
+        }
+        return cells;
+    }
+
+    private int cell(Location l) {
+        return _layout.cell(l);
+    }
+
+    private static int bitsFor(int maxValue) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+    }
+
+    private static int clamp(int value, int bits) {
+        return Math.max(0, Math.min(value, (1 << bits) - 1));
+    }
+
+    private int removedBit(int hostageId) {
+        return _hostageOffset[hostageId] + _cellBits + HOSTAGE_DAMAGE_BITS + 2;
+    }
+
+    /**
+     * moves bit to the next word if a field of the given width would not fit in the current one.
+     */
+    private static int align(int bit, int width) {
+        if ((bit & 63) + width > 64) return (bit + 63) & ~63;
+        return bit;
+    }
+
+    private static void put(long[] out, int offset, int bit, int value) {
+        out[offset + (bit >>> 6)] |= ((long) value) << (bit & 63);
+    }
+
+    private static int get(long[] in, int offset, int bit, int width) {
+        return (int) ((in[offset + (bit >>> 6)] >>> (bit & 63)) & ((1L << width) - 1));
+    }
+
+    private static void setBit(long[] out, int offset, int bit) {
+        out[offset + (bit >>> 6)] |= 1L << (bit & 63);
+    }
+
+    private static void clearBit(long[] out, int offset, int bit) {
+        out[offset + (bit >>> 6)] &= ~(1L << (bit & 63));
+    }
+}
@@ -7,33 +7,36 @@ package code;
  * good use for it.
  */
 
-public class Node<State, Operator> implements Comparable<Node<State, Operator>> {
+public class Node<State, Operator> {
 
     /**
      * state: The state in the state space to which the node corresponds
      * parent: The node in the search tree that generated this node
      * action: The action that was applied to the parent to generate the node
-     * pathCost: The cost of the path from the initial state to the node
+     * cost: The cost of the path from the initial state to the node, deaths in the high 32 bits and kills in
+     * the low 32 bits (see packCost)
      * heuristic: the value of the heuristic for the current node
      * depth: the depth level of the node from the root, 0-indexed
+     * <p>
+     * The node is kept small since BFS holds millions of them: the cost is a single long rather than an
+     * array, and how nodes are ordered is decided by the comparator of the frontier, not by the node.
      */
 
     private State _state;
-    private Node _parent;
+    private Node<State, Operator> _parent;
     private Operator _action;
-    private int[] _pathCost;
+    private long _cost;
     private float _heuristic;
     private int _depth;
-    private boolean _isgreedy;
 
-    public Node(State state, Node parent, Operator action, int[] pathCost, float heuristic, int depth) {
+    public Node(State state, Node<State, Operator> parent, Operator action, int deaths, int kills,
+                float heuristic, int depth) {
         _state = state;
         _parent = parent;
         _action = action;
-        _pathCost = pathCost;
+        _cost = packCost(deaths, kills);
         _heuristic = heuristic;
         _depth = depth;
-        _isgreedy = false;
     }
 
     /**
@@ -45,16 +48,13 @@ public class Node<State, Operator> implements Comparable<Node<State, Operator>>
         _state = null;
         _parent = null;
         _action = null;
-        _pathCost = new int[]{0, 0};
+        _cost = 0;
         _heuristic = 0;
         _depth = 0;
     }
 
     // ==========================Getters-and-Setters==========================
-    public void setgreedy(boolean isgreedy)
-    {
-    	_isgreedy = isgreedy;
-    }
+
     public State getState() {
         return _state;
     }
@@ -63,11 +63,11 @@ public class Node<State, Operator> implements Comparable<Node<State, Operator>>
         _state = state;
     }
 
-    public Node getParent() {
+    public Node<State, Operator> getParent() {
         return _parent;
     }
 
-    public void setParent(Node parent) {
+    public void setParent(Node<State, Operator> parent) {
         _parent = parent;
     }
 
@@ -79,19 +79,30 @@ public class Node<State, Operator> implements Comparable<Node<State, Operator>>
         _action = action;
     }
 
-    public int[] getPathCost() {
-        return _pathCost;
+    /**
+     * @return the packed path cost, which orders nodes by deaths and then kills when compared as a long
+     */
+    public long getCost() {
+        return _cost;
+    }
+
+    public int getDeaths() {
+        return (int) (_cost >>> 32);
     }
 
-    public void setPathCost(int[] pathCost) {
-        _pathCost = pathCost;
+    public int getKills() {
+        return (int) _cost;
+    }
+
+    public void setPathCost(int deaths, int kills) {
+        _cost = packCost(deaths, kills);
     }
 
     public float getHeuristic() {
         return _heuristic;
     }
 
-    public void setHeuristic(int heuristic) {
+    public void setHeuristic(float heuristic) {
         _heuristic = heuristic;
     }
 
@@ -103,51 +114,12 @@ public class Node<State, Operator> implements Comparable<Node<State, Operator>>
         _depth = depth;
     }
 
-    // ==========================Comparison==========================
-
-    @Override
-    public int compareTo(Node<State, Operator> node) {
-    	if(!_isgreedy)
-    	{
-    		float myTotal = this.getPathCost()[0] + this.getHeuristic();
-            float otherTotal = node.getPathCost()[0] + node.getHeuristic();
-
-            if (myTotal > otherTotal) {
-                // if current object is greater,then return 1
-                return 1;
-            } else if (myTotal < otherTotal) {
-                // if current object is less,then return -1
-                return -1;
-            } else {
-                myTotal += this.getPathCost()[1];
-                otherTotal += node.getPathCost()[1];
-
-                if (myTotal > otherTotal) {
-                    return 1;
-                } else if (myTotal < otherTotal) {
-                    // if current object is less,then return -1
-                    return -1;
-                }
-                return 0;
-            	}
-            
-        }
-    	else
-        {
-    		float myTotal = this.getHeuristic();
-            float otherTotal = node.getHeuristic();
-
-            if (myTotal > otherTotal) {
-                // if current object is greater,then return 1
-                return 1;
-            } else if (myTotal < otherTotal) {
-                // if current object is less,then return -1
-                return -1;
-            }
-            else
-            {
-            	return 0;
-            }
-        }
+    // ============================Additional-Methods===========================
+
+    /**
+     * @return deaths and kills packed into a long, deaths in the high bits. Both must be non-negative.
+     */
+    public static long packCost(int deaths, int kills) {
+        return ((long) deaths << 32) | (kills & 0xFFFFFFFFL);
     }
 }
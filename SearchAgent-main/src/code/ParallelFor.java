@@ -0,0 +1,88 @@
+package code;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a loop body for every index of a range on a ForkJoinPool, splitting the range in halves until the
+ * pieces are small enough to run on their own. Used by the parallel searches to expand a whole layer of
+ * nodes at once.
+ */
+
+public class ParallelFor {
+
+    /**
+     * The loop body. It may throw the same checked exceptions as Matrix.result.
+     */
+    public interface Body {
+        void run(int i) throws IOException, ClassNotFoundException;
+    }
+
+    /**
+     * Carries a checked exception of a body out of the pool, where it is unwrapped again.
+     */
+    private static class BodyException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BodyException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Body _body;
+        private final int _from;
+        private final int _to;
+        private final int _grain;
+
+        RangeTask(Body body, int from, int to, int grain) {
+            _body = body;
+            _from = from;
+            _to = to;
+            _grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from <= _grain) {
+                try {
+                    for (int i = _from; i < _to; i++) _body.run(i);
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new BodyException(e);
+                }
+                return;
+            }
+
+            int mid = (_from + _to) >>> 1;
+            invokeAll(new RangeTask(_body, _from, mid, _grain), new RangeTask(_body, mid, _to, _grain));
+        }
+    }
+
+    private ParallelFor() {
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Runs body for every index from 0 to n - 1 and waits for all of them. Bodies run concurrently and in no
+     * particular order.
+     */
+    public static void run(ForkJoinPool pool, int n, Body body) throws IOException, ClassNotFoundException {
+        if (n == 0) return;
+
+        // a few pieces per worker, so a worker that finishes early can steal from the others
+        int grain = Math.max(1, n / (pool.getParallelism() * 8));
+        try {
+            pool.invoke(new RangeTask(body, 0, n, grain));
+        } catch (BodyException e) {
+            // the pool may wrap the exception of another thread once more
+            Throwable cause = e.getCause();
+            while (cause instanceof BodyException) cause = cause.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw (ClassNotFoundException) cause;
+        }
+    }
+}
@@ -3,297 +3,1015 @@ package code;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Search {
 
+    /**
+     * Orders nodes by deaths plus heuristic, then by deaths plus heuristic plus kills. Used by UCS and A*.
+     */
+    static final Comparator<Node<?, ?>> BY_COST_AND_HEURISTIC = (n1, n2) -> {
+        float myTotal = n1.getDeaths() + n1.getHeuristic();
+        float otherTotal = n2.getDeaths() + n2.getHeuristic();
+        if (myTotal != otherTotal) return myTotal > otherTotal ? 1 : -1;
+
+        myTotal += n1.getKills();
+        otherTotal += n2.getKills();
+        return Float.compare(myTotal, otherTotal);
+    };
+
+    /**
+     * Orders nodes by heuristic alone. Used by greedy search.
+     */
+    static final Comparator<Node<?, ?>> BY_HEURISTIC =
+            (n1, n2) -> Float.compare(n1.getHeuristic(), n2.getHeuristic());
+
+    public static <State, Operator> SearchResult<State, Operator> searchProcedure(
+            SearchProblem<State, Operator, ?> problem, String strategy) throws IOException, ClassNotFoundException {
+        return searchProcedure(problem, strategy, new SearchOptions());
+    }
 
-    public static Object[] searchProcedure(SearchProblem problem, String strategy) throws IOException, ClassNotFoundException {
+    /**
+     * Runs a search strategy on a problem. The Matrix has every strategy, any other problem has BF and DF, run by
+     * a SearchKernel that tells states apart by their equals and hashCode.
+     *
+     * @param options optional settings, see SearchOptions
+     * @return how the search ended, with its goal node and statistics. null for an unknown strategy.
+     */
+    @SuppressWarnings("unchecked")
+    public static <State, Operator> SearchResult<State, Operator> searchProcedure(
+            SearchProblem<State, Operator, ?> problem, String strategy, SearchOptions options)
+            throws IOException, ClassNotFoundException {
 
         if (problem instanceof Matrix) {
-            Matrix mProblem = (Matrix) problem;
+            return (SearchResult<State, Operator>) matrixSearch((Matrix) problem, strategy, options);
+        }
 
-            //root node
-            Node<MatrixState, MatrixOperator> root = new Node<>();
-            root.setState(mProblem.initialState);
+        switch (strategy) {
+            case "BF":
+                return uninformed(problem, new FifoFrontier<>(), options);
+            case "DF":
+                return uninformed(problem, new LifoFrontier<>(), options);
+            default:
+                return null;
+        }
+    }
 
+    /**
+     * Runs a strategy on the Matrix.
+     *
+     * @return null for an unknown strategy
+     */
+    private static SearchResult<MatrixState, MatrixOperator> matrixSearch(Matrix mProblem, String strategy,
+                                                                          SearchOptions options)
+            throws IOException, ClassNotFoundException {
+
+        //root node
+        Node<MatrixState, MatrixOperator> root = new Node<>();
+        root.setState(mProblem.initialState);
+
+        if (options.isMacroOperators()) {
+            SearchResult<MatrixState, MatrixOperator> result = macroSearch(mProblem, strategy, options);
+            if (result != null) return result;
+        }
+
+        if (options.isUseArena()) {
             switch (strategy) {
                 case "BF":
-                    return BFS(mProblem, root);
+                    return BFSArena(mProblem, options);
                 case "DF":
-                    return DFS(mProblem, root);
-                case "ID":
-                    return IDS(mProblem, root, 1000);
+                    return DFSArena(mProblem, options);
                 case "UC":
-                    return UCS(mProblem, root);
-                case "GR1":
-                    return GR(mProblem, root, 1);
-                case "GR2":
-                    return GR(mProblem, root, 2);
-                case "AS1":
-                    return AS(mProblem, root, 1);
-                case "AS2":
-                    return AS(mProblem, root, 2);
+                    return UCSArena(mProblem, options);
                 default:
                     break;
             }
+        }
 
+        switch (strategy) {
+            case "BF":
+                return BFS(mProblem, root, options);
+            case "BFE":
+                return new ExternalBFS(mProblem, options).search();
+            case "BFP":
+                return BFSParallel(mProblem, root, options);
+            case "DF":
+                return DFS(mProblem, root, options);
+            case "ID":
+                return IDS(mProblem, root, 1000, options);
+            case "UC":
+                return UCS(mProblem, root, options);
+            case "GR1":
+                return GR(mProblem, root, 1, options);
+            case "GR2":
+                return GR(mProblem, root, 2, options);
+            case "GR3":
+                return GR(mProblem, root, 3, options);
+            case "AS1":
+                if (generationDedup(options)) return AS(mProblem, root, 1, options);
+                return ASIndexed(mProblem, root, 1, options);
+            case "AS2":
+                if (generationDedup(options)) return AS(mProblem, root, 2, options);
+                return ASIndexed(mProblem, root, 2, options);
+            case "AS3":
+                if (generationDedup(options)) return AS(mProblem, root, 3, options);
+                return ASIndexed(mProblem, root, 3, options);
+            case "UCP":
+                return new HDAStar(mProblem, 0, options).search(root);
+            case "AS1P":
+                return new HDAStar(mProblem, 1, options).search(root);
+            case "AS2P":
+                return new HDAStar(mProblem, 2, options).search(root);
+            case "ARA1":
+                return new ARAStar(mProblem, 1, options).search(root);
+            case "ARA2":
+                return new ARAStar(mProblem, 2, options).search(root);
+            case "BM1":
+                return beamSearch(mProblem, root, 1, options);
+            case "BM2":
+                return beamSearch(mProblem, root, 2, options);
+            case "IDA1":
+                return IDAStar(mProblem, root, 1, options);
+            case "IDA2":
+                return IDAStar(mProblem, root, 2, options);
+            case "PORTFOLIO":
+                return portfolio(mProblem, options);
+            default:
+                float weight = focalWeight(strategy);
+                if (weight >= 1) {
+                    return new FocalSearch(mProblem, strategy.charAt(2) - '0', weight, options).search(root);
+                }
+                return null;
         }
+    }
 
-        return null;
+    /**
+     * BF or DF on a problem other than the Matrix, depending on frontier. Nodes only count their depth, since
+     * the cost type of the problem is unknown.
+     */
+    private static <State, Operator, Cost> SearchResult<State, Operator> uninformed(
+            SearchProblem<State, Operator, Cost> problem, Frontier<Node<State, Operator>> frontier,
+            SearchOptions options) throws IOException, ClassNotFoundException {
+        Node<State, Operator> root = new Node<>();
+        root.setState(problem.initialState);
+        Evaluation<State, Operator, Cost> depthOnly =
+                (parent, a, s, cost) -> new Node<>(s, parent, a, 0, 0, 0, parent.getDepth() + 1);
+        return new SearchKernel<>(problem, frontier, new HashStateSet<>(), depthOnly).search(root, options.getBudget());
     }
 
-    public static Object[] BFS(Matrix problem, Node<MatrixState, MatrixOperator> root) throws IOException, ClassNotFoundException {
-        HashSet<MatrixState> visitedStates = new HashSet<MatrixState>();
-        Queue<Node<MatrixState, MatrixOperator>> Q = new LinkedList<>();
-        Q.add(root);
-        visitedStates.add(root.getState());
-        int expandedNodes = 0;
+    public static SearchResult<MatrixState, MatrixOperator> BFS(Matrix problem,
+                                                                Node<MatrixState, MatrixOperator> root,
+                                                                SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        return new SearchKernel<>(problem, new FifoFrontier<>(), visitedSet(problem, options),
+                (parent, a, s, cost) -> child(parent, a, s, cost, 0)).search(root, options.getBudget());
+    }
 
-        while (!Q.isEmpty()) {
-            Node<MatrixState, MatrixOperator> head = Q.poll();
-            
+    public static SearchResult<MatrixState, MatrixOperator> DFS(Matrix problem,
+                                                                Node<MatrixState, MatrixOperator> root,
+                                                                SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        return new SearchKernel<>(problem, new LifoFrontier<>(), visitedSet(problem, options),
+                (parent, a, s, cost) -> child(parent, a, s, cost, 0)).search(root, options.getBudget());
+    }
+
+    /**
+     * Iterative deepening. One TranspositionTable is shared by all iterations and remembers the shallowest depth
+     * each state was reached at in the current one, so a state is searched again only when it is reached with
+     * more depth left. Stops early, with failure, once an iteration never reaches the depth limit, since deeper
+     * iterations would search the same tree. The budget covers all iterations together.
+     */
+    public static SearchResult<MatrixState, MatrixOperator> IDS(Matrix problem,
+                                                                Node<MatrixState, MatrixOperator> root, int maxDepth,
+                                                                SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        TranspositionTable table = new TranspositionTable(problem.getEncoder(), options.getTranspositionTableSize());
+        SearchMeter meter = new SearchMeter(options.getBudget());
+        SearchResult<MatrixState, MatrixOperator> DLSResult = meter.result(SearchStatus.CUTOFF, null);
+
+        // Perform limited depth search until we reach the specified maximum depth
+        for (int i = 0; i < maxDepth + 1; i++) {
+            DLSResult = DLS(problem, root, i, table, i + 1, meter);
+
+            // goal found, whole tree fit within the limit, or budget exhausted
+            if (DLSResult.getStatus() != SearchStatus.CUTOFF) return DLSResult;
+        }
+
+        return DLSResult;
+    }
+
+    public static SearchResult<MatrixState, MatrixOperator> UCS(Matrix problem,
+                                                                Node<MatrixState, MatrixOperator> root,
+                                                                SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        return new SearchKernel<>(problem, frontier(options, false, true), visitedSet(problem, options),
+                (parent, a, s, cost) -> child(parent, a, s, cost, 0)).search(root, options.getBudget());
+    }
+
+    public static SearchResult<MatrixState, MatrixOperator> GR(Matrix problem, Node<MatrixState, MatrixOperator> root,
+                                                               int heuristicNum, SearchOptions options)
+            throws ClassNotFoundException, IOException {
+        // GreedyHeuristic1 is fractional, so only GR2 and GR3 can use buckets
+        Frontier<Node<MatrixState, MatrixOperator>> Q = frontier(options, true, heuristicNum != 1);
+        return new SearchKernel<>(problem, Q, visitedSet(problem, options),
+                (parent, a, s, cost) -> child(parent, a, s, cost, greedyHeuristic(problem, s, heuristicNum)))
+                .search(root, options.getBudget());
+    }
+
+    public static SearchResult<MatrixState, MatrixOperator> AS(Matrix problem, Node<MatrixState, MatrixOperator> root,
+                                                               int heuristicNum, SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        return new SearchKernel<>(problem, frontier(options, false, true), visitedSet(problem, options),
+                (parent, a, s, cost) -> child(parent, a, s, cost, asHeuristic(problem, s, heuristicNum)))
+                .search(root, options.getBudget());
+    }
+
+    /**
+     * @param cost step cost from parent to s, deaths then kills
+     * @return the node of s reached from parent by a
+     */
+    private static <O> Node<MatrixState, O> child(Node<MatrixState, O> parent, O a, MatrixState s, int[] cost,
+                                                  float heuristic) {
+        return new Node<>(s, parent, a, parent.getDeaths() + cost[0], parent.getKills() + cost[1], heuristic,
+                parent.getDepth() + 1);
+    }
+
+    /**
+     * BF, DF, UC, GR1, GR2, GR3, AS1, AS2, or AS3 over the macro operators of MacroMatrix, on the same kernel,
+     * duplicate detection, and frontiers as the search over single actions.
+     *
+     * @return the result with the plan unfolded into single actions, and the number of macro nodes expanded.
+     * null for any other strategy.
+     */
+    private static SearchResult<MatrixState, MatrixOperator> macroSearch(Matrix problem, String strategy,
+                                                                         SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        MacroMatrix macros = new MacroMatrix(problem);
+        Frontier<Node<MatrixState, MacroOperator>> frontier;
+        Evaluation<MatrixState, MacroOperator, int[]> evaluation;
+        switch (strategy) {
+            case "BF":
+                frontier = new FifoFrontier<>();
+                evaluation = (parent, a, s, cost) -> child(parent, a, s, cost, 0);
+                break;
+            case "DF":
+                frontier = new LifoFrontier<>();
+                evaluation = (parent, a, s, cost) -> child(parent, a, s, cost, 0);
+                break;
+            case "UC":
+                frontier = frontier(options, false, true);
+                evaluation = (parent, a, s, cost) -> child(parent, a, s, cost, 0);
+                break;
+            case "GR1":
+            case "GR2":
+            case "GR3":
+                int greedyNum = strategy.charAt(2) - '0';
+                frontier = frontier(options, true, greedyNum != 1);
+                evaluation = (parent, a, s, cost) -> child(parent, a, s, cost, greedyHeuristic(problem, s, greedyNum));
+                break;
+            case "AS1":
+            case "AS2":
+            case "AS3":
+                int heuristicNum = strategy.charAt(2) - '0';
+                frontier = frontier(options, false, true);
+                evaluation = (parent, a, s, cost) -> child(parent, a, s, cost, asHeuristic(problem, s, heuristicNum));
+                break;
+            default:
+                return null;
+        }
+
+        Node<MatrixState, MacroOperator> root = new Node<>();
+        root.setState(macros.initialState);
+        SearchResult<MatrixState, MacroOperator> result =
+                new SearchKernel<>(macros, frontier, visitedSet(problem, options), evaluation)
+                        .search(root, options.getBudget());
+        return new SearchResult<>(result.getStatus(), macros.unfold(result.getGoal()), result.getExpandedNodes(),
+                result.getPeakFrontier(), result.getVisited());
+    }
+
+    /**
+     * A* with an IndexedOpenList. Unlike AS, states are only closed when they are expanded: a cheaper path to a
+     * queued state replaces its node (decrease-key), and a cheaper path to an expanded state reopens it, which
+     * happens since our heuristics are not consistent. Paths are compared by deaths, then kills, and with
+     * ASHeuristic3 then by how hurt the hostages are.
+     *
+     * @return how the search ended, including the number of reopenings
+     */
+    public static SearchResult<MatrixState, MatrixOperator> ASIndexed(Matrix problem,
+                                                                      Node<MatrixState, MatrixOperator> root,
+                                                                      int heuristicNum, SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        IndexedOpenList<MatrixState, Node<MatrixState, MatrixOperator>> open =
+                new IndexedOpenList<>(BY_COST_AND_HEURISTIC);
+        open.put(root.getState(), root);
+        SearchMeter meter = new SearchMeter(options.getBudget());
+        SearchResult<MatrixState, MatrixOperator> result = null;
+
+        while (!open.isEmpty()) {
             // Expand node
-            expandedNodes++;
-            
-            if (problem.isGoal(head.getState())) return new Object[]{head, expandedNodes};
-
-            ArrayList<MatrixOperator> possibleActions = problem.actions(head);
-            for (MatrixOperator a : possibleActions) {
-                MatrixState possibleState = problem.result(head.getState(), a);
-                if (!visitedStates.contains(possibleState)) {
-                    int[] cost = new int[]{head.getPathCost()[0], head.getPathCost()[1]};
-                    cost[0]+= problem.stepCost(head.getState(), a, possibleState)[0];
-                    cost[1]+= problem.stepCost(head.getState(), a, possibleState)[1];
-                    Node<MatrixState, MatrixOperator> newNode = new Node<MatrixState, MatrixOperator>(possibleState, head, a, cost, 0, head.getDepth() + 1);
-                    Q.add(newNode);
-                    visitedStates.add(possibleState);
-                }
+            SearchStatus stop = meter.expand(open.size(), open.states());
+            if (stop != null) {
+                result = meter.result(stop, null);
+                break;
+            }
+            Node<MatrixState, MatrixOperator> head = open.poll();
+
+            if (problem.isGoal(head.getState())) {
+                result = meter.result(SearchStatus.SOLVED, head);
+                break;
+            }
+
+            for (Successor<MatrixState, MatrixOperator, int[]> next : problem.expand(head)) {
+                MatrixOperator a = next.getAction();
+                MatrixState possibleState = next.getState();
+                int deaths = head.getDeaths() + next.getStepCost()[0];
+                int kills = head.getKills() + next.getStepCost()[1];
+
+                // keep the old node unless this path is strictly cheaper. ASHeuristic3 reads hostage damage, which
+                // equals ignores, so for it a path as cheap that hurts the hostages less replaces the old node too,
+                // and the heuristic is computed anew. ASHeuristic1 and ASHeuristic2 only read what equals
+                // compares, so the value of a known equal state is reused.
+                long cost = Node.packCost(deaths, kills);
+                Node<MatrixState, MatrixOperator> best = open.get(possibleState);
+                boolean damageAware = heuristicNum == 3;
+                if (best != null && (damageAware ? !cheaperOrLessHurt(cost, possibleState, best)
+                        : best.getCost() <= cost)) continue;
+
+                float heuristic = best != null && !damageAware ? best.getHeuristic()
+                        : asHeuristic(problem, possibleState, heuristicNum);
+                open.put(possibleState, new Node<>(possibleState, head, a, deaths, kills, heuristic,
+                        head.getDepth() + 1));
             }
         }
 
         // null == failure
-        return new Object[]{null,expandedNodes};
+        if (result == null) result = meter.result(SearchStatus.FAILED, null);
+        result.setReopenings(open.getReopenings());
+        return result;
     }
 
-    public static Object[] DFS(Matrix problem, Node<MatrixState, MatrixOperator> root) throws IOException, ClassNotFoundException {
-        HashSet<MatrixState> visitedStates = new HashSet<MatrixState>();
-        Stack<Node<MatrixState, MatrixOperator>> S = new Stack<>();
-        S.add(root);
-        visitedStates.add(root.getState());
-        int expandedNodes = 0;
+    /**
+     * IDA*: depth-first searches bounded twice, by deaths and by f = depth + heuristic. ASHeuristic1 and
+     * ASHeuristic2 count actions and every action adds 1 to the depth, so the bound on f limits how deep an
+     * iteration goes, which a bound on deaths alone cannot, most actions costing no deaths. An iteration that
+     * cut off nodes by f raises that bound to the smallest f it cut off. One that cut off nodes by deaths alone
+     * has searched every state with fewer deaths, so the deaths bound goes up to the fewest deaths it cut off,
+     * and the first goal found has the fewest deaths. That iteration searches on with the nodes cheaper than
+     * the best goal found and returns the one with the fewest kills within its bounds.
+     * <p>
+     * Besides the current path, one TranspositionTable of transpositionTableSize states is shared by all
+     * iterations, like for ID, so a state is searched again only when it is reached with more depth left.
+     * Deaths and kills are the same on every path to a state, so that loses no cheaper goal. With
+     * SearchOptions.isPathCycleCheck an action leading back to a state already on the path is skipped even
+     * once the table is full. The budget covers all iterations together.
+     */
+    public static SearchResult<MatrixState, MatrixOperator> IDAStar(Matrix problem,
+                                                                    Node<MatrixState, MatrixOperator> root,
+                                                                    int heuristicNum, SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        root.setHeuristic(asHeuristic(problem, root.getState(), heuristicNum));
+        TranspositionTable table = new TranspositionTable(problem.getEncoder(), options.getTranspositionTableSize());
+        SearchMeter meter = new SearchMeter(options.getBudget());
+        int deathsBound = root.getDeaths();
+        float threshold = root.getDepth() + root.getHeuristic();
+
+        for (int iteration = 1; ; iteration++) {
+            float[] next = new float[]{Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+            SearchResult<MatrixState, MatrixOperator> result = IDAIteration(problem, root, heuristicNum, deathsBound,
+                    threshold, options.isPathCycleCheck(), table, iteration, meter, next);
+
+            if (result.getStatus() != SearchStatus.CUTOFF) return result;
+            if (next[0] != Float.POSITIVE_INFINITY) threshold = next[0];
+            else deathsBound = (int) next[1];
+        }
+    }
+
+    /**
+     * A node of the current IDA* path with the actions of it that are left to try.
+     */
+    private static class PathFrame {
+        final Node<MatrixState, MatrixOperator> node;
+        final ArrayList<MatrixOperator> actions;
+        int next;
+
+        PathFrame(Node<MatrixState, MatrixOperator> node, ArrayList<MatrixOperator> actions) {
+            this.node = node;
+            this.actions = actions;
+        }
+    }
+
+    /**
+     * One bounded depth-first search of IDA*, with an explicit stack so long paths cannot overflow the call
+     * stack, pruning states that table says this iteration already reached at the same depth or shallower.
+     *
+     * @param iteration number of the iteration, passed on to the table
+     * @param meter     counts expansions over all iterations
+     * @param next      receives the smallest f over threshold of a node within deathsBound, then the fewest
+     *                  deaths over deathsBound
+     * @return SOLVED with the cheapest goal within the bounds, CUTOFF if there is none but some node went over
+     * them, FAILED otherwise, or the budget limit that was hit
+     */
+    private static SearchResult<MatrixState, MatrixOperator> IDAIteration(Matrix problem,
+                                                                          Node<MatrixState, MatrixOperator> root,
+                                                                          int heuristicNum, int deathsBound,
+                                                                          float threshold, boolean cycleCheck,
+                                                                          TranspositionTable table, int iteration,
+                                                                          SearchMeter meter, float[] next)
+            throws IOException, ClassNotFoundException {
+        ArrayDeque<PathFrame> path = new ArrayDeque<>();
+        HashSet<MatrixState> onPath = new HashSet<>();
+        Node<MatrixState, MatrixOperator> incumbent = null;
+
+        SearchStatus stop = meter.expand(1, table.size());
+        if (stop != null) return meter.result(stop, null);
+        if (problem.isGoal(root.getState())) return meter.result(SearchStatus.SOLVED, root);
+        table.visit(root.getState(), root.getDepth(), iteration);
+        path.push(new PathFrame(root, problem.actions(root)));
+        if (cycleCheck) onPath.add(root.getState());
+
+        while (!path.isEmpty()) {
+            PathFrame top = path.peek();
+            if (top.next == top.actions.size()) {
+                path.pop();
+                if (cycleCheck) onPath.remove(top.node.getState());
+                continue;
+            }
+
+            Node<MatrixState, MatrixOperator> head = top.node;
+            MatrixOperator a = top.actions.get(top.next++);
+            MatrixState possibleState = problem.result(head.getState(), a);
+            if (cycleCheck && onPath.contains(possibleState)) continue;
+
+            int[] cost = problem.stepCost(head.getState(), a, possibleState);
+            int deaths = head.getDeaths() + cost[0];
+            int kills = head.getKills() + cost[1];
+            // no cheaper goal past the best one found
+            if (incumbent != null && Node.packCost(deaths, kills) >= incumbent.getCost()) continue;
+            if (deaths > deathsBound) {
+                next[1] = Math.min(next[1], deaths);
+                continue;
+            }
+
+            float heuristic = asHeuristic(problem, possibleState, heuristicNum);
+            float f = head.getDepth() + 1 + heuristic;
+            if (f > threshold) {
+                next[0] = Math.min(next[0], f);
+                continue;
+            }
+
+            // if state was not reached with as much depth left
+            if (!table.visit(possibleState, head.getDepth() + 1, iteration)) continue;
+            Node<MatrixState, MatrixOperator> child = new Node<>(possibleState, head, a, deaths, kills, heuristic,
+                    head.getDepth() + 1);
 
-        while (!S.isEmpty()) {
-            Node<MatrixState, MatrixOperator> head = S.pop();
-            
             // Expand node
-            expandedNodes++;
-            
-            if (problem.isGoal(head.getState())) return new Object[]{head, expandedNodes};
-
-            ArrayList<MatrixOperator> possibleActions = problem.actions(head);
-            for (MatrixOperator a : possibleActions) {
-                MatrixState possibleState = problem.result(head.getState(), a);
-                if (!visitedStates.contains(possibleState)) {
-                    int[] cost = new int[]{head.getPathCost()[0], head.getPathCost()[1]};
-                    cost[0]+= problem.stepCost(head.getState(), a, possibleState)[0];
-                    cost[1]+= problem.stepCost(head.getState(), a, possibleState)[1];
-                    Node<MatrixState, MatrixOperator> newNode = new Node<MatrixState, MatrixOperator>(possibleState, head, a, cost, 0, head.getDepth() + 1);
-                    S.push(newNode);
-                    visitedStates.add(possibleState);
+            stop = meter.expand(path.size(), table.size());
+            if (stop != null) return meter.result(stop, null);
+
+            if (problem.isGoal(possibleState)) {
+                incumbent = child;
+                continue;
+            }
+            path.push(new PathFrame(child, problem.actions(child)));
+            if (cycleCheck) onPath.add(possibleState);
+        }
+
+        if (incumbent != null) return meter.result(SearchStatus.SOLVED, incumbent);
+        boolean cutoff = next[0] != Float.POSITIVE_INFINITY || next[1] != Float.POSITIVE_INFINITY;
+        return meter.result(cutoff ? SearchStatus.CUTOFF : SearchStatus.FAILED, null);
+    }
+
+    /**
+     * Beam search: breadth-first by layers, keeping only the beamWidth best nodes of every layer by deaths plus
+     * heuristic, then kills. Memory is bounded by the options alone, whatever the grid: a layer and the
+     * successors of one, the ancestors of the layer (at most beamWidth per depth), and a TranspositionTable of
+     * transpositionTableSize states, which drops successors that an earlier layer already reached.
+     *
+     * @return SOLVED, BEAM_PRUNED if the layers ran out after the beam dropped nodes, FAILED if they ran out
+     * without, or the budget limit that was hit
+     */
+    public static SearchResult<MatrixState, MatrixOperator> beamSearch(Matrix problem,
+                                                                       Node<MatrixState, MatrixOperator> root,
+                                                                       int heuristicNum, SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        int width = Math.max(1, options.getBeamWidth());
+        TranspositionTable table = new TranspositionTable(problem.getEncoder(), options.getTranspositionTableSize());
+        SearchMeter meter = new SearchMeter(options.getBudget());
+        boolean pruned = false;
+
+        ArrayList<Node<MatrixState, MatrixOperator>> layer = new ArrayList<>();
+        layer.add(root);
+        table.visit(root.getState(), 0, 1);
+
+        while (!layer.isEmpty()) {
+            // successors of the layer, the cheapest one for every state
+            HashMap<MatrixState, Node<MatrixState, MatrixOperator>> successors = new HashMap<>();
+            for (Node<MatrixState, MatrixOperator> head : layer) {
+                // Expand node
+                SearchStatus stop = meter.expand(layer.size() + successors.size(), table.size());
+                if (stop != null) return meter.result(stop, null);
+
+                if (problem.isGoal(head.getState())) return meter.result(SearchStatus.SOLVED, head);
+
+                for (Successor<MatrixState, MatrixOperator, int[]> next : problem.expand(head)) {
+                    MatrixOperator a = next.getAction();
+                    MatrixState possibleState = next.getState();
+                    int deaths = head.getDeaths() + next.getStepCost()[0];
+                    int kills = head.getKills() + next.getStepCost()[1];
+
+                    Node<MatrixState, MatrixOperator> known = successors.get(possibleState);
+                    if (known != null && known.getCost() <= Node.packCost(deaths, kills)) continue;
+
+                    float heuristic = known != null ? known.getHeuristic() : asHeuristic(problem, possibleState, heuristicNum);
+                    successors.put(possibleState, new Node<>(possibleState, head, a, deaths, kills, heuristic,
+                            head.getDepth() + 1));
+                }
+            }
+
+            // the next layer is the best successors not reached by an earlier layer
+            ArrayList<Node<MatrixState, MatrixOperator>> candidates = new ArrayList<>(successors.values());
+            candidates.sort(BY_COST_AND_HEURISTIC);
+            layer = new ArrayList<>(Math.min(width, candidates.size()));
+            for (Node<MatrixState, MatrixOperator> candidate : candidates) {
+                if (layer.size() < width) {
+                    if (table.visit(candidate.getState(), candidate.getDepth(), 1)) layer.add(candidate);
+                } else if (!table.prunes(candidate.getState(), candidate.getDepth(), 1)) {
+                    // only a candidate the table would have let through is lost to the beam
+                    pruned = true;
+                    break;
                 }
             }
         }
 
-        // null == failure
-        return new Object[]{null,expandedNodes};
+        return meter.result(pruned ? SearchStatus.BEAM_PRUNED : SearchStatus.FAILED, null);
     }
 
-    public static Object[] IDS(Matrix problem, Node<MatrixState, MatrixOperator> root, int maxDepth)
+    /**
+     * @param strategy a focal search strategy, AE1 or AE2 followed by a dash and the suboptimality factor, like
+     *                 AE1-1.5
+     * @return the suboptimality factor, or 0 if strategy is not a focal search or has no finite factor
+     */
+    private static float focalWeight(String strategy) {
+        if (!strategy.startsWith("AE1-") && !strategy.startsWith("AE2-")) return 0;
+        try {
+            float weight = Float.parseFloat(strategy.substring(4));
+            return Float.isInfinite(weight) ? 0 : weight;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Equal states may differ in how hurt their hostages are (see MatrixState.equals), so among equally cheap
+     * paths the one whose hostages are hurt less is kept.
+     */
+    static boolean cheaperOrLessHurt(long cost, MatrixState s, Node<MatrixState, MatrixOperator> known) {
+        return cost < known.getCost() || (cost == known.getCost() && damage(s) < damage(known.getState()));
+    }
+
+    private static int damage(MatrixState s) {
+        int[] damage = s.getHostageDamage();
+        boolean[] removed = s.getHostageRemoved();
+        int total = 0;
+        for (int i = 0; i < damage.length; i++) {
+            if (!removed[i] && damage[i] < 100) total += damage[i];
+        }
+        return total;
+    }
+
+    static float asHeuristic(Matrix problem, MatrixState s, int heuristicNum) {
+        if (heuristicNum == 1) return problem.ASHeuristic1(s);
+        if (heuristicNum == 2) return problem.ASHeuristic2(s);
+        return problem.ASHeuristic3(s);
+    }
+
+    private static float greedyHeuristic(Matrix problem, MatrixState s, int heuristicNum) {
+        if (heuristicNum == 1) return problem.GreedyHeuristic1(s);
+        if (heuristicNum == 2) return problem.GreedyHeuristic2(s);
+        return problem.GreedyHeuristic3(s);
+    }
+
+    /**
+     * Depth limited search, pruning states that table says this iteration already reached at the same depth or
+     * shallower.
+     *
+     * @param iteration number of the iteration, passed on to the table
+     * @param meter     counts expansions over all iterations
+     * @return SOLVED, CUTOFF if a node at depth d had actions left, FAILED otherwise, or the budget limit that
+     * was hit
+     */
+    public static SearchResult<MatrixState, MatrixOperator> DLS(Matrix problem,
+                                                                Node<MatrixState, MatrixOperator> root, int d,
+                                                                TranspositionTable table, int iteration,
+                                                                SearchMeter meter)
             throws IOException, ClassNotFoundException {
-        Object[] DLSResult;
-        int expandedNodes = 0;
+        Stack<Node<MatrixState, MatrixOperator>> S = new Stack<>();
+        boolean limitReached = false;
 
-        // Perform limited depth search until we reach the specified maximum depth
-        for (int i = 0; i < maxDepth + 1; i++) {
-            DLSResult = DLS(problem, root, i); // goal node and number of expanded nodes
-            expandedNodes += (int) DLSResult[1]; // add the number of expanded nodes to the total
-            DLSResult[1] = expandedNodes;
+        S.push(root);
+        table.visit(root.getState(), 0, iteration);
+
+        while (!S.isEmpty()) {
+            // Expand node
+            SearchStatus stop = meter.expand(S.size(), table.size());
+            if (stop != null) return meter.result(stop, null);
+            Node<MatrixState, MatrixOperator> head = S.pop();
+
+            if (problem.isGoal(head.getState())) return meter.result(SearchStatus.SOLVED, head);
 
-            if (DLSResult[0] != null) return DLSResult; // if goal is found
+            if (head.getDepth() == d) { // maximum depth reached
+                limitReached |= !problem.actions(head).isEmpty();
+                continue;
+            }
+
+            // All successors of current state
+            for (Successor<MatrixState, MatrixOperator, int[]> next : problem.expand(head)) {
+                MatrixState result = next.getState(); //state resulting from action
+                int[] stepCost = next.getStepCost();
+
+                // if state was not reached with as much depth left
+                if (table.visit(result, head.getDepth() + 1, iteration)) {
+                    Node<MatrixState, MatrixOperator> child = new Node<>(result, head, next.getAction(),
+                            head.getDeaths() + stepCost[0], head.getKills() + stepCost[1], 0, head.getDepth() + 1);
+                    S.add(child); //added to stack
+                }
+            }
         }
 
-        // null goal node == failure
-        return new Object[]{null, expandedNodes};
+        return meter.result(limitReached ? SearchStatus.CUTOFF : SearchStatus.FAILED, null);
     }
 
-    public static Object[] UCS(Matrix problem, Node<MatrixState, MatrixOperator> root) throws IOException, ClassNotFoundException {
-        PriorityQueue<Node<MatrixState, MatrixOperator>> Q = new PriorityQueue<>();
-        HashSet<MatrixState> visitedStates = new HashSet<>();
-        int expandedNodes = 0;
+    /**
+     * @return true if the options ask for a feature of the engines that discard states when they are generated
+     * (dominance pruning, bucket queues), which A* then has to run on instead of ASIndexed
+     */
+    private static boolean generationDedup(SearchOptions options) {
+        return options.isDominance() || options.isBucketQueue();
+    }
 
-        Q.add(root);
-        visitedStates.add(root.getState());
+    /**
+     * @return the duplicate detection the options ask for: exact duplicates only, or dominance as well
+     */
+    private static StateSet<MatrixState> visitedSet(Matrix problem, SearchOptions options) {
+        if (options.isDominance()) {
+            return new DominanceSet(problem.getEncoder(), problem.getZobrist(), options.isReplaceDominated());
+        }
+        return new VisitedSet(problem.getEncoder());
+    }
 
-        while (!Q.isEmpty()) {
-            Node<MatrixState, MatrixOperator> head = Q.poll();
+    /**
+     * @param greedy   order by heuristic alone rather than by cost and heuristic
+     * @param integral whether every heuristic value is an integer
+     * @return a bucket queue if the options ask for one and the priorities are integers, a binary heap
+     * otherwise
+     */
+    private static <O> Frontier<Node<MatrixState, O>> frontier(SearchOptions options, boolean greedy,
+                                                               boolean integral) {
+        if (options.isBucketQueue() && integral) {
+            if (greedy) return new BucketQueue<>(n -> (int) n.getHeuristic(), n -> 0, true);
+            return new BucketQueue<>(n -> n.getDeaths() + (int) n.getHeuristic(), Node::getKills);
+        }
+        return new HeapFrontier<>(greedy ? BY_HEURISTIC : BY_COST_AND_HEURISTIC);
+    }
+
+    // ================================Arena-Searches=================================
+
+    /**
+     * BFS over a StateArena. Nodes are stored in the order they are generated, which is already the order a
+     * BFS queue would return them, so the frontier is just the slots past the one being expanded.
+     */
+    public static SearchResult<MatrixState, MatrixOperator> BFSArena(Matrix problem, SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        StateArena arena = new StateArena(problem.getEncoder());
+        SearchMeter meter = new SearchMeter(options.getBudget());
+        arena.add(problem.initialState, -1, null, 0, 0, 0);
+        Node<MatrixState, MatrixOperator> view = new Node<>();
 
+        for (int head = 0; head < arena.size(); head++) {
             // Expand node
-            expandedNodes++;
+            SearchStatus stop = meter.expand(arena.size() - head, arena.size());
+            if (stop != null) return meter.result(stop, null);
+            MatrixState state = arena.getState(head);
 
-            if (problem.isGoal(head.getState())) return new Object[]{head, expandedNodes};
+            if (problem.isGoal(state)) return meter.result(SearchStatus.SOLVED, arena.toNode(head));
 
+            expandArena(problem, arena, view, head, state, null);
+        }
 
-            // All possible actions from current state
-            ArrayList<MatrixOperator> actions = problem.actions(head);
+        // null == failure
+        return meter.result(SearchStatus.FAILED, null);
+    }
 
-            //current action
-            for (MatrixOperator action : actions) {
-                MatrixState result = problem.result(head.getState(), action); //state resulting from action
-                int[] stepCost = problem.stepCost(head.getState(), action, result);
-                int[] pathCost = new int[]{head.getPathCost()[0], head.getPathCost()[1]};
-                pathCost[0] += stepCost[0];
-                pathCost[1] += stepCost[1];
+    /**
+     * DFS over a StateArena, with a stack of slots as the frontier.
+     */
+    public static SearchResult<MatrixState, MatrixOperator> DFSArena(Matrix problem, SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        StateArena arena = new StateArena(problem.getEncoder());
+        SearchMeter meter = new SearchMeter(options.getBudget());
+        Node<MatrixState, MatrixOperator> view = new Node<>();
+        int[] stack = new int[1 << 10];
+        int top = 0;
 
-                // if state is not repeated
-                if (!visitedStates.contains(result)) {
-                    Node<MatrixState, MatrixOperator> child = new Node<>(result, head, action, pathCost,
-                            0, head.getDepth() + 1);
-                    Q.add(child); //added to queue
-                    visitedStates.add(result); // state marked as visited to avoid adding it to queue again
-                }
+        stack[top++] = arena.add(problem.initialState, -1, null, 0, 0, 0);
+
+        while (top > 0) {
+            // Expand node
+            SearchStatus stop = meter.expand(top, arena.size());
+            if (stop != null) return meter.result(stop, null);
+            int head = stack[--top];
+            MatrixState state = arena.getState(head);
+
+            if (problem.isGoal(state)) return meter.result(SearchStatus.SOLVED, arena.toNode(head));
+
+            int first = arena.size();
+            expandArena(problem, arena, view, head, state, null);
+            for (int child = first; child < arena.size(); child++) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = child;
             }
         }
 
         // null == failure
-        return new Object[]{null, expandedNodes};
+        return meter.result(SearchStatus.FAILED, null);
     }
 
-    public static Object[]
-    GR(Matrix problem, Node<MatrixState, MatrixOperator> root, int heuristicNum) throws ClassNotFoundException, IOException {
+    /**
+     * UCS over a StateArena. The frontier holds longs packing deaths, kills, and the slot, so it orders nodes
+     * the same way BY_COST_AND_HEURISTIC does when there is no heuristic, and ties go to the older node.
+     */
+    public static SearchResult<MatrixState, MatrixOperator> UCSArena(Matrix problem, SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        StateArena arena = new StateArena(problem.getEncoder());
+        SearchMeter meter = new SearchMeter(options.getBudget());
+        Node<MatrixState, MatrixOperator> view = new Node<>();
+        LongHeap Q = new LongHeap();
 
-        HashSet<MatrixState> visitedStates = new HashSet<MatrixState>();
-        int expandedNodes = 0;
-        PriorityQueue<Node<MatrixState, MatrixOperator>> Q = new PriorityQueue<>();
-        root.setgreedy(true);
-        Q.add(root);
-        visitedStates.add(root.getState());
+        Q.add(arena.add(problem.initialState, -1, null, 0, 0, 0));
 
         while (!Q.isEmpty()) {
-        	expandedNodes++;
-            Node<MatrixState, MatrixOperator> head = Q.poll();
-            if (problem.isGoal(head.getState())) return new Object[]{head,expandedNodes};
-            ArrayList <MatrixOperator> possible_actions = problem.actions(head);
-            for (MatrixOperator x : possible_actions)
-            {
-            	MatrixState new_state=problem.result(head.getState(), x);
-            	if(!visitedStates.contains(new_state))
-            	{
-                	int[]cost = new int[]{head.getPathCost()[0], head.getPathCost()[1]};
-                    cost[0]+= problem.stepCost(head.getState(), x, new_state)[0];
-                    cost[1]+= problem.stepCost(head.getState(), x, new_state)[1];
-
-                	float hur_value=0;
-                	
-                	if(heuristicNum == 1)
-                	{
-                		hur_value = problem.GreedyHeuristic1(new_state);
-                	}
-                	else
-                	{
-                		hur_value = problem.GreedyHeuristic2(new_state);
-                	}
-                	
-                	Node<MatrixState,MatrixOperator> result_node = new Node<MatrixState,MatrixOperator>(new_state,head,x,cost,hur_value,head.getDepth()+1);
-                	result_node.setgreedy(true);
-            		Q.add(result_node);
-            		visitedStates.add(new_state);
-            	}
+            // Expand node
+            SearchStatus stop = meter.expand(Q.size(), arena.size());
+            if (stop != null) return meter.result(stop, null);
+            int head = (int) Q.poll();
+            MatrixState state = arena.getState(head);
 
-            }
+            if (problem.isGoal(state)) return meter.result(SearchStatus.SOLVED, arena.toNode(head));
+
+            expandArena(problem, arena, view, head, state, Q);
         }
 
-        return new Object[]{null,expandedNodes};
+        // null == failure
+        return meter.result(SearchStatus.FAILED, null);
     }
 
-    public static Object[] AS(Matrix problem, Node<MatrixState, MatrixOperator> root, int heuristicNum) throws IOException, ClassNotFoundException {
-        HashSet<MatrixState> visitedStates = new HashSet<MatrixState>();
-        PriorityQueue<Node<MatrixState, MatrixOperator>> Q = new PriorityQueue<>();
-        Q.add(root);
-        visitedStates.add(root.getState());
-        int expandedNodes = 0;
+    /**
+     * Stores the children of the node in slot head that the arena has not seen yet.
+     *
+     * @param view  reusable node handed to problem.actions
+     * @param state state of the node in head
+     * @param Q     if not null, each new child is added to it keyed by its path cost
+     */
+    private static void expandArena(Matrix problem, StateArena arena, Node<MatrixState, MatrixOperator> view,
+                                    int head, MatrixState state, LongHeap Q)
+            throws IOException, ClassNotFoundException {
+        view.setState(state);
+        view.setAction(arena.getAction(head));
+        int deaths = arena.getDeaths(head);
+        int kills = arena.getKills(head);
+        int depth = arena.getDepth(head);
+
+        for (Successor<MatrixState, MatrixOperator, int[]> next : problem.expand(view)) {
+            int[] stepCost = next.getStepCost();
+            int child = arena.add(next.getState(), head, next.getAction(), deaths + stepCost[0], kills + stepCost[1],
+                    depth + 1);
+
+            if (child >= 0 && Q != null) {
+                Q.add(((long) (deaths + stepCost[0]) << 48) | ((long) (kills + stepCost[1]) << 32) | child);
+            }
+        }
+    }
 
-        while (!Q.isEmpty()) {
-            Node<MatrixState, MatrixOperator> head = Q.poll();
-            
-         // Expand node
-            expandedNodes++;
-            
-            if (problem.isGoal(head.getState())) return new Object[]{head, expandedNodes};
-
-            ArrayList<MatrixOperator> possibleActions = problem.actions(head);
-            for (MatrixOperator a : possibleActions) {
-                MatrixState possibleState = problem.result(head.getState(), a);
-                if (!visitedStates.contains(possibleState)) {
-                    int[] cost = new int[]{head.getPathCost()[0], head.getPathCost()[1]};
-                    cost[0]+= problem.stepCost(head.getState(), a, possibleState)[0];
-                    cost[1]+= problem.stepCost(head.getState(), a, possibleState)[1];
-                    float heuristic = 0;
-                    if (heuristicNum == 1) {
-                        heuristic = problem.ASHeuristic1(possibleState);
-                    } else if (heuristicNum == 2) {
-                        heuristic = problem.ASHeuristic2(possibleState);
+    // ================================Parallel-Searches=================================
+
+    /**
+     * Level-synchronous parallel BFS. Every layer of the search tree is expanded at once on a ForkJoinPool,
+     * and the children are claimed in a concurrent map keeping, for every new state, the first parent and
+     * action in layer order. The next layer is then sorted by those claims, so layers hold the same nodes in
+     * the same order as the queue of BFS would, and the goal returned is the first goal of the shallowest
+     * layer that has one: the same node, with the same number of expanded nodes, as BFS finds. Duplicate
+     * detection is exact (no dominance). The budget is checked for a whole layer at once, and a layer the
+     * expansion limit cannot cover is not expanded.
+     */
+    public static SearchResult<MatrixState, MatrixOperator> BFSParallel(Matrix problem,
+                                                                        Node<MatrixState, MatrixOperator> root,
+                                                                        SearchOptions options)
+            throws IOException, ClassNotFoundException {
+        Set<MatrixState> visitedStates = ConcurrentHashMap.newKeySet();
+        List<Node<MatrixState, MatrixOperator>> layer = Collections.singletonList(root);
+        visitedStates.add(root.getState());
+        SearchBudget budget = options.getBudget();
+        SearchMeter meter = new SearchMeter(budget);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, options.getParallelism()));
+        try {
+            while (!layer.isEmpty()) {
+                List<Node<MatrixState, MatrixOperator>> current = layer;
+                SearchStatus stop = budget.checkStopped();
+                if (stop != null) return meter.result(stop, null);
+
+                AtomicInteger goal = new AtomicInteger(Integer.MAX_VALUE);
+                ParallelFor.run(pool, current.size(), i -> {
+                    if (problem.isGoal(current.get(i).getState())) goal.accumulateAndGet(i, Math::min);
+                });
+                if (goal.get() != Integer.MAX_VALUE) {
+                    // BFS would have expanded the layer up to its first goal
+                    stop = meter.expand(goal.get() + 1, current.size(), visitedStates.size());
+                    if (stop != null) return meter.result(stop, null);
+                    return meter.result(SearchStatus.SOLVED, current.get(goal.get()));
+                }
+                stop = meter.expand(current.size(), current.size(), visitedStates.size());
+                if (stop != null) return meter.result(stop, null);
+
+                // claim: index of the parent in the layer, then index of the action, then its ordinal
+                ConcurrentHashMap<MatrixState, Long> claims = new ConcurrentHashMap<>();
+                ParallelFor.run(pool, current.size(), i -> {
+                    if (budget.getCancellation().isCancelled()) return;
+                    Node<MatrixState, MatrixOperator> head = current.get(i);
+                    ArrayList<MatrixOperator> possibleActions = problem.actions(head);
+                    for (int j = 0; j < possibleActions.size(); j++) {
+                        MatrixOperator a = possibleActions.get(j);
+                        MatrixState possibleState = problem.result(head.getState(), a);
+                        if (!visitedStates.contains(possibleState)) {
+                            claims.merge(possibleState, ((long) i << 32) | ((long) j << 8) | a.ordinal(), Math::min);
+                        }
                     }
-                    Node<MatrixState, MatrixOperator> newNode = new Node<>(possibleState, head, a, cost, heuristic, head.getDepth() + 1);
-                    Q.add(newNode);
+                });
+
+                List<Map.Entry<MatrixState, Long>> children = new ArrayList<>(claims.entrySet());
+                children.sort(Map.Entry.comparingByValue());
+
+                List<Node<MatrixState, MatrixOperator>> next =
+                        new ArrayList<>(Collections.nCopies(children.size(), null));
+                MatrixOperator[] operators = MatrixOperator.values();
+                ParallelFor.run(pool, next.size(), k -> {
+                    long claim = children.get(k).getValue();
+                    Node<MatrixState, MatrixOperator> head = current.get((int) (claim >>> 32));
+                    MatrixOperator a = operators[(int) claim & 0xFF];
+
+                    // the key of the map is whichever equal state was claimed first, which may differ from
+                    // the state of the winning claim in what equals ignores, such as hostage damage
+                    MatrixState possibleState = problem.result(head.getState(), a);
+                    int[] cost = problem.stepCost(head.getState(), a, possibleState);
+                    next.set(k, new Node<>(possibleState, head, a,
+                            head.getDeaths() + cost[0], head.getKills() + cost[1], 0, head.getDepth() + 1));
                     visitedStates.add(possibleState);
-                }
+                });
+                layer = next;
             }
+        } finally {
+            pool.shutdown();
         }
 
         // null == failure
-        return new Object[]{null,expandedNodes};
+        return meter.result(SearchStatus.FAILED, null);
     }
 
-    public static Object[] DLS(Matrix problem, Node<MatrixState, MatrixOperator> root, int d)
+    /**
+     * Races the strategies of SearchOptions.getPortfolio against each other on the same problem, one thread
+     * each. Without a deadline the first solution wins; with one, the cheapest solution by deaths, then kills,
+     * found before the deadline wins, or the first one found after it if there was none. The other strategies
+     * are then cancelled, and waited for, so the memory they hold is free when this returns.
+     * <p>
+     * Every strategy gets the limits of the budget on its own, and all of them share its deadline and
+     * cancellation. A strategy that throws, running out of memory for one, loses the race like one that failed.
+     *
+     * @return the winning goal node with the statistics of all strategies added up. Without a winner, the
+     * status is FAILED if every strategy failed, otherwise the limit one of them ran into.
+     * @throws IOException            what the first strategy to throw threw, if none of them returned
+     * @throws ClassNotFoundException the same
+     */
+    public static SearchResult<MatrixState, MatrixOperator> portfolio(Matrix problem, SearchOptions options)
             throws IOException, ClassNotFoundException {
-        HashSet<MatrixState> visitedStates = new HashSet<>();
-        Stack<Node<MatrixState, MatrixOperator>> S = new Stack<>();
-        int expandedNodes = 0;
-
-        S.push(root);
-        visitedStates.add(root.getState());
-
-        while (!S.isEmpty()) {
-            Node<MatrixState, MatrixOperator> head = S.pop();
+        String[] strategies = options.getPortfolio();
+        CancellationToken race = new CancellationToken(options.getBudget().getCancellation());
+        SearchOptions raceOptions = new SearchOptions(options);
+        raceOptions.setBudget(new SearchBudget(options.getBudget()));
+        raceOptions.getBudget().setCancellation(race);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, strategies.length));
+        ExecutorCompletionService<SearchResult<MatrixState, MatrixOperator>> results =
+                new ExecutorCompletionService<>(pool);
+        for (String strategy : strategies) {
+            // every strategy gets its own root, since some of them set its heuristic
+            results.submit(() -> searchProcedure(problem, strategy, raceOptions));
+        }
 
-            // Expand node
-            expandedNodes++;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getPortfolioDeadline());
+        SearchResult<MatrixState, MatrixOperator> total = new SearchResult<>(SearchStatus.FAILED, null, 0, 0, 0);
+        Throwable[] failure = new Throwable[1];
+        boolean returned = false;
+        int pending = strategies.length;
+        try {
+            while (pending > 0 && (total.getGoal() == null || options.getPortfolioDeadline() > 0)) {
+                Future<SearchResult<MatrixState, MatrixOperator>> next;
+                if (total.getGoal() == null) {
+                    next = results.take();
+                } else {
+                    next = results.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break; // deadline passed
+                }
+                pending--;
+
+                SearchResult<MatrixState, MatrixOperator> result = raceResult(next, failure);
+                if (result == null) continue; // unknown strategy, or it threw
+                returned = true;
+                addUp(total, result);
+
+                Node<MatrixState, MatrixOperator> goal = result.getGoal();
+                if (goal != null && (total.getGoal() == null || goal.getCost() < total.getGoal().getCost())) {
+                    total.setGoal(goal);
+                    total.setStatus(SearchStatus.SOLVED);
+                } else if (total.getGoal() == null && result.getStatus().isBudgetExhausted()) {
+                    total.setStatus(result.getStatus());
+                }
+            }
 
-            if (problem.isGoal(head.getState())) return new Object[]{head, expandedNodes};
-            if (head.getDepth() == d) continue; // maximum depth reached
+            race.cancel();
+            for (; pending > 0; pending--) {
+                SearchResult<MatrixState, MatrixOperator> result = raceResult(results.take(), failure);
+                if (result != null) addUp(total, result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            race.cancel();
+            pool.shutdown();
+            awaitTermination(pool);
+        }
 
+        if (!returned && failure[0] != null) rethrow(failure[0]);
+        return total;
+    }
 
-            // All possible actions from current state
-            ArrayList<MatrixOperator> actions = problem.actions(head);
+    /**
+     * Waits for every task of pool to end, keeping the interrupt for the caller if there was one.
+     */
+    private static void awaitTermination(ExecutorService pool) {
+        boolean interrupted = false;
+        while (!pool.isTerminated()) {
+            try {
+                pool.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
 
-            //current action
-            for (MatrixOperator action : actions) {
-                MatrixState result = problem.result(head.getState(), action); //state resulting from action
-                int[] stepCost = problem.stepCost(head.getState(), action, result);
-                int[] pathCost = new int[]{head.getPathCost()[0], head.getPathCost()[1]};
-                pathCost[0] += stepCost[0];
-                pathCost[1] += stepCost[1];
+    /**
+     * Adds the statistics of result to total.
+     */
+    private static void addUp(SearchResult<MatrixState, MatrixOperator> total,
+                              SearchResult<MatrixState, MatrixOperator> result) {
+        total.setExpandedNodes(total.getExpandedNodes() + result.getExpandedNodes());
+        total.setPeakFrontier(total.getPeakFrontier() + result.getPeakFrontier());
+        total.setVisited(total.getVisited() + result.getVisited());
+        total.setReopenings(total.getReopenings() + result.getReopenings());
+    }
 
-                // if state is not repeated and is not maximum depth
-                if (!visitedStates.contains(result)) {
-                    Node<MatrixState, MatrixOperator> child = new Node<>(result, head, action, pathCost,
-                            0, head.getDepth() + 1);
-                    S.add(child); //added to stack
-                    visitedStates.add(result); // state marked as visited to avoid adding it to queue again
-                }
-            }
+    /**
+     * @param failure receives what the strategy threw, unless an earlier strategy threw already
+     * @return the result of a finished portfolio strategy, or null if it threw
+     */
+    private static SearchResult<MatrixState, MatrixOperator> raceResult(
+            Future<SearchResult<MatrixState, MatrixOperator>> result, Throwable[] failure)
+            throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (failure[0] == null) failure[0] = e.getCause();
+            return null;
         }
+    }
 
-        return new Object[]{null, expandedNodes};
+    /**
+     * Throws what a portfolio strategy threw, wrapped in an IllegalStateException if portfolio cannot throw it
+     * as it is.
+     */
+    private static void rethrow(Throwable failure) throws IOException, ClassNotFoundException {
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure instanceof ClassNotFoundException) throw (ClassNotFoundException) failure;
+        if (failure instanceof Error) throw (Error) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        throw new IllegalStateException(failure);
     }
 }
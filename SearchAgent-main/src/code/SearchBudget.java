@@ -0,0 +1,130 @@
+package code;
+
+/**
+ * Limits on what a search may spend before it gives up: expanded nodes, frontier size, visited states, a
+ * wall-clock deadline, and a cancellation token. A fresh budget is unlimited and never cancelled.
+ * <p>
+ * Engines check the budget once per expanded node, and return a SearchResult with the status of the limit
+ * they ran into and the statistics gathered so far.
+ */
+
+public class SearchBudget {
+
+    /**
+     * Expansions between two reads of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /**
+     * maxExpansions: the search stops before expanding more nodes than this.
+     * maxFrontier: the search stops once its frontier holds more nodes than this.
+     * maxVisited: the search stops once it remembers more states than this.
+     * deadline: time, in milliseconds since the epoch, at which the search stops. Long.MAX_VALUE for none.
+     * cancellation: token another thread may cancel to stop the search.
+     */
+
+    private long _maxExpansions;
+    private int _maxFrontier;
+    private int _maxVisited;
+    private long _deadline;
+    private CancellationToken _cancellation;
+
+    public SearchBudget() {
+        _maxExpansions = Long.MAX_VALUE;
+        _maxFrontier = Integer.MAX_VALUE;
+        _maxVisited = Integer.MAX_VALUE;
+        _deadline = Long.MAX_VALUE;
+        _cancellation = new CancellationToken();
+    }
+
+    /**
+     * Copies every limit of other, sharing its cancellation token.
+     */
+    public SearchBudget(SearchBudget other) {
+        _maxExpansions = other._maxExpansions;
+        _maxFrontier = other._maxFrontier;
+        _maxVisited = other._maxVisited;
+        _deadline = other._deadline;
+        _cancellation = other._cancellation;
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    public long getMaxExpansions() {
+        return _maxExpansions;
+    }
+
+    public void setMaxExpansions(long maxExpansions) {
+        _maxExpansions = maxExpansions;
+    }
+
+    public int getMaxFrontier() {
+        return _maxFrontier;
+    }
+
+    public void setMaxFrontier(int maxFrontier) {
+        _maxFrontier = maxFrontier;
+    }
+
+    public int getMaxVisited() {
+        return _maxVisited;
+    }
+
+    public void setMaxVisited(int maxVisited) {
+        _maxVisited = maxVisited;
+    }
+
+    public long getDeadline() {
+        return _deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        _deadline = deadline;
+    }
+
+    /**
+     * Sets the deadline to millis milliseconds from now.
+     */
+    public void setTimeLimit(long millis) {
+        _deadline = System.currentTimeMillis() + millis;
+    }
+
+    public CancellationToken getCancellation() {
+        return _cancellation;
+    }
+
+    public void setCancellation(CancellationToken cancellation) {
+        _cancellation = cancellation;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Decides whether a search may expand another node. The clock is only read every few expansions.
+     *
+     * @param expanded nodes expanded so far
+     * @param frontier nodes in the frontier
+     * @param visited  states the search remembers
+     * @return null if the search may go on, otherwise the limit it ran into
+     */
+    public SearchStatus check(long expanded, int frontier, int visited) {
+        if (_cancellation.isCancelled()) return SearchStatus.CANCELLED;
+        if (expanded >= _maxExpansions) return SearchStatus.EXPANSION_LIMIT;
+        if (frontier > _maxFrontier) return SearchStatus.FRONTIER_LIMIT;
+        if (visited > _maxVisited) return SearchStatus.VISITED_LIMIT;
+        if (expanded % CLOCK_INTERVAL == 0 && System.currentTimeMillis() >= _deadline) return SearchStatus.DEADLINE;
+        return null;
+    }
+
+    /**
+     * The limits that do not depend on a count, for code that cannot count cheaply, like the inner loops of
+     * parallel searches.
+     *
+     * @return null if the search may go on, otherwise the limit it ran into
+     */
+    public SearchStatus checkStopped() {
+        if (_cancellation.isCancelled()) return SearchStatus.CANCELLED;
+        if (_deadline != Long.MAX_VALUE && System.currentTimeMillis() >= _deadline) return SearchStatus.DEADLINE;
+        return null;
+    }
+}
@@ -0,0 +1,65 @@
+package code;
+
+import java.io.IOException;
+
+/**
+ * The search loop BF, DF, UC, GR, and AS share, over any SearchProblem. The strategies only differ in the
+ * policies they plug in:
+ * <ul>
+ * <li>frontier: which node is expanded next (FifoFrontier, LifoFrontier, HeapFrontier, BucketQueue).</li>
+ * <li>duplicate detection: which generated states are worth queueing, decided once when they are generated
+ * (VisitedSet, DominanceSet, HashStateSet).</li>
+ * <li>evaluation: the path cost and heuristic of a generated node.</li>
+ * </ul>
+ * A kernel is built for one search and holds its policies in final fields, so the loop makes one interface
+ * call per policy and step, and a JVM running a single strategy sees one implementation at each of them.
+ *
+ * @param <State>    state type
+ * @param <Operator> action type
+ * @param <Cost>     step cost type of the problem
+ */
+
+public final class SearchKernel<State, Operator, Cost> {
+
+    private final SearchProblem<State, Operator, Cost> _problem;
+    private final Frontier<Node<State, Operator>> _frontier;
+    private final StateSet<State> _visited;
+    private final Evaluation<State, Operator, Cost> _evaluation;
+
+    public SearchKernel(SearchProblem<State, Operator, Cost> problem, Frontier<Node<State, Operator>> frontier,
+                        StateSet<State> visited, Evaluation<State, Operator, Cost> evaluation) {
+        _problem = problem;
+        _frontier = frontier;
+        _visited = visited;
+        _evaluation = evaluation;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Searches from root, which is checked for the goal when it is expanded like every other node.
+     */
+    public SearchResult<State, Operator> search(Node<State, Operator> root, SearchBudget budget)
+            throws IOException, ClassNotFoundException {
+        SearchMeter meter = new SearchMeter(budget);
+        _frontier.add(root);
+        _visited.add(root.getState());
+
+        while (!_frontier.isEmpty()) {
+            // Expand node
+            SearchStatus stop = meter.expand(_frontier.size(), _visited.size());
+            if (stop != null) return meter.result(stop, null);
+            Node<State, Operator> head = _frontier.poll();
+
+            if (_problem.isGoal(head.getState())) return meter.result(SearchStatus.SOLVED, head);
+
+            for (Successor<State, Operator, Cost> next : _problem.expand(head)) {
+                if (_visited.add(next.getState())) {
+                    _frontier.add(_evaluation.child(head, next.getAction(), next.getState(), next.getStepCost()));
+                }
+            }
+        }
+
+        return meter.result(SearchStatus.FAILED, null);
+    }
+}
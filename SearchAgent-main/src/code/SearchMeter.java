@@ -0,0 +1,53 @@
+package code;
+
+/**
+ * Counts what one search spends and checks it against the search's budget. Every engine asks its meter
+ * before expanding a node and builds its SearchResult from it.
+ */
+
+class SearchMeter {
+
+    private final SearchBudget _budget;
+    private int _expandedNodes;
+    private int _peakFrontier;
+    private int _visited;
+
+    SearchMeter(SearchBudget budget) {
+        _budget = budget;
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    int getExpandedNodes() {
+        return _expandedNodes;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Counts an expansion, unless the budget is exhausted, in which case the node must not be expanded.
+     *
+     * @param frontier nodes in the frontier, including the one about to be expanded
+     * @param visited  states the search remembers
+     * @return null if the node may be expanded, otherwise the limit the search ran into
+     */
+    SearchStatus expand(int frontier, int visited) {
+        return expand(1, frontier, visited);
+    }
+
+    /**
+     * Same as expand(frontier, visited), for count nodes expanded at once.
+     */
+    SearchStatus expand(int count, int frontier, int visited) {
+        _peakFrontier = Math.max(_peakFrontier, frontier);
+        _visited = visited;
+
+        SearchStatus stop = _budget.check(_expandedNodes + count - 1L, frontier, visited);
+        if (stop == null) _expandedNodes += count;
+        return stop;
+    }
+
+    <State, Operator> SearchResult<State, Operator> result(SearchStatus status, Node<State, Operator> goal) {
+        return new SearchResult<>(status, goal, _expandedNodes, _peakFrontier, _visited);
+    }
+}
@@ -0,0 +1,262 @@
+package code;
+
+import java.io.File;
+
+/**
+ * Optional settings for Search.searchProcedure. A freshly constructed instance reproduces the default
+ * behaviour of every strategy, so callers only set what they want to change.
+ */
+
+public class SearchOptions {
+
+    /**
+     * useArena: keep the nodes of BF, DF, and UC off-heap in a StateArena.
+     * macroOperators: run BF, DF, UC, and the GR and AS strategies over the macro operators of MacroMatrix,
+     * walks to the next point of interest instead of single moves. Faster on large grids, but may miss
+     * solutions.
+     * dominance: besides exact duplicates, discard states that are dominated by a visited state (see
+     * DominanceSet). Only used by heap searches.
+     * replaceDominated: with dominance, overwrite a visited state when a state dominating it is inserted,
+     * instead of keeping both.
+     * bucketQueue: give UC, AS, GR2, and GR3 a BucketQueue frontier instead of a binary heap. GR1 has fractional
+     * priorities and always uses the heap.
+     * pathCycleCheck: make IDA1 and IDA2 skip actions that lead back to a state on the current path. On by
+     * default. Their transposition table prunes most of these too, but forgets states once it is full.
+     * transpositionTableSize: maximum number of states the transposition tables of ID, IDA1, IDA2, BM1, and BM2
+     * remember.
+     * parallelism: number of worker threads of the parallel strategies (BFP, UCP, AS1P, AS2P).
+     * budget: limits the search stops at, including its cancellation token, see SearchBudget.
+     * portfolio: strategies PORTFOLIO races against each other.
+     * portfolioDeadline: with 0, PORTFOLIO returns the first solution found. Otherwise it waits up to this
+     * many milliseconds for all strategies and returns the cheapest solution by deaths, then kills.
+     * araWeight: heuristic weight of the first search of ARA1 and ARA2.
+     * araWeightStep: how much ARA1 and ARA2 lower the weight after every search, down to 1.
+     * solutionListener: receives every solution ARA1 and ARA2 find as soon as they find it, null for none.
+     * beamWidth: number of nodes BM1 and BM2 keep per depth.
+     * externalDirectory: scratch directory BFE keeps its layers in, and resumes from.
+     * externalBufferSize: size in bytes of the buffer of every file BFE reads or writes.
+     * externalRunSize: number of states BFE collects in memory before sorting them and writing them out.
+     * externalDuplicateLayers: number of earlier layers BFE drops duplicates of, 0 for all of them.
+     */
+
+    private boolean _useArena;
+    private boolean _macroOperators;
+    private boolean _dominance;
+    private boolean _replaceDominated;
+    private boolean _bucketQueue;
+    private boolean _pathCycleCheck;
+    private int _transpositionTableSize;
+    private int _parallelism;
+    private SearchBudget _budget;
+    private String[] _portfolio;
+    private long _portfolioDeadline;
+    private float _araWeight;
+    private float _araWeightStep;
+    private SolutionListener _solutionListener;
+    private int _beamWidth;
+    private String _externalDirectory;
+    private int _externalBufferSize;
+    private int _externalRunSize;
+    private int _externalDuplicateLayers;
+
+    public SearchOptions() {
+        _useArena = false;
+        _macroOperators = false;
+        _dominance = false;
+        _replaceDominated = false;
+        _bucketQueue = false;
+        _pathCycleCheck = true;
+        _transpositionTableSize = 1 << 20;
+        _parallelism = Runtime.getRuntime().availableProcessors();
+        _budget = new SearchBudget();
+        _portfolio = new String[]{"BF", "DF", "ID", "UC", "GR1", "GR2", "AS1", "AS2"};
+        _portfolioDeadline = 0;
+        _araWeight = 3;
+        _araWeightStep = 0.5f;
+        _solutionListener = null;
+        _beamWidth = 256;
+        _externalDirectory = new File(System.getProperty("java.io.tmpdir"), "matrix-bfe").getPath();
+        _externalBufferSize = 1 << 16;
+        _externalRunSize = 1 << 18;
+        _externalDuplicateLayers = 2;
+    }
+
+    /**
+     * Copies every setting of other.
+     */
+    public SearchOptions(SearchOptions other) {
+        _useArena = other._useArena;
+        _macroOperators = other._macroOperators;
+        _dominance = other._dominance;
+        _replaceDominated = other._replaceDominated;
+        _bucketQueue = other._bucketQueue;
+        _pathCycleCheck = other._pathCycleCheck;
+        _transpositionTableSize = other._transpositionTableSize;
+        _parallelism = other._parallelism;
+        _budget = other._budget;
+        _portfolio = other._portfolio;
+        _portfolioDeadline = other._portfolioDeadline;
+        _araWeight = other._araWeight;
+        _araWeightStep = other._araWeightStep;
+        _solutionListener = other._solutionListener;
+        _beamWidth = other._beamWidth;
+        _externalDirectory = other._externalDirectory;
+        _externalBufferSize = other._externalBufferSize;
+        _externalRunSize = other._externalRunSize;
+        _externalDuplicateLayers = other._externalDuplicateLayers;
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    public boolean isUseArena() {
+        return _useArena;
+    }
+
+    public void setUseArena(boolean useArena) {
+        _useArena = useArena;
+    }
+
+    public boolean isMacroOperators() {
+        return _macroOperators;
+    }
+
+    public void setMacroOperators(boolean macroOperators) {
+        _macroOperators = macroOperators;
+    }
+
+    public boolean isDominance() {
+        return _dominance;
+    }
+
+    public void setDominance(boolean dominance) {
+        _dominance = dominance;
+    }
+
+    public boolean isReplaceDominated() {
+        return _replaceDominated;
+    }
+
+    public void setReplaceDominated(boolean replaceDominated) {
+        _replaceDominated = replaceDominated;
+    }
+
+    public boolean isBucketQueue() {
+        return _bucketQueue;
+    }
+
+    public void setBucketQueue(boolean bucketQueue) {
+        _bucketQueue = bucketQueue;
+    }
+
+    public boolean isPathCycleCheck() {
+        return _pathCycleCheck;
+    }
+
+    public void setPathCycleCheck(boolean pathCycleCheck) {
+        _pathCycleCheck = pathCycleCheck;
+    }
+
+    public int getTranspositionTableSize() {
+        return _transpositionTableSize;
+    }
+
+    public void setTranspositionTableSize(int transpositionTableSize) {
+        _transpositionTableSize = transpositionTableSize;
+    }
+
+    public int getParallelism() {
+        return _parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        _parallelism = parallelism;
+    }
+
+    public SearchBudget getBudget() {
+        return _budget;
+    }
+
+    public void setBudget(SearchBudget budget) {
+        _budget = budget;
+    }
+
+    public String[] getPortfolio() {
+        return _portfolio;
+    }
+
+    public void setPortfolio(String[] portfolio) {
+        _portfolio = portfolio;
+    }
+
+    public long getPortfolioDeadline() {
+        return _portfolioDeadline;
+    }
+
+    public void setPortfolioDeadline(long portfolioDeadline) {
+        _portfolioDeadline = portfolioDeadline;
+    }
+
+    public float getAraWeight() {
+        return _araWeight;
+    }
+
+    public void setAraWeight(float araWeight) {
+        _araWeight = araWeight;
+    }
+
+    public float getAraWeightStep() {
+        return _araWeightStep;
+    }
+
+    public void setAraWeightStep(float araWeightStep) {
+        _araWeightStep = araWeightStep;
+    }
+
+    public SolutionListener getSolutionListener() {
+        return _solutionListener;
+    }
+
+    public void setSolutionListener(SolutionListener solutionListener) {
+        _solutionListener = solutionListener;
+    }
+
+    public int getBeamWidth() {
+        return _beamWidth;
+    }
+
+    public void setBeamWidth(int beamWidth) {
+        _beamWidth = beamWidth;
+    }
+
+    public String getExternalDirectory() {
+        return _externalDirectory;
+    }
+
+    public void setExternalDirectory(String externalDirectory) {
+        _externalDirectory = externalDirectory;
+    }
+
+    public int getExternalBufferSize() {
+        return _externalBufferSize;
+    }
+
+    public void setExternalBufferSize(int externalBufferSize) {
+        _externalBufferSize = externalBufferSize;
+    }
+
+    public int getExternalRunSize() {
+        return _externalRunSize;
+    }
+
+    public void setExternalRunSize(int externalRunSize) {
+        _externalRunSize = externalRunSize;
+    }
+
+    public int getExternalDuplicateLayers() {
+        return _externalDuplicateLayers;
+    }
+
+    public void setExternalDuplicateLayers(int externalDuplicateLayers) {
+        _externalDuplicateLayers = externalDuplicateLayers;
+    }
+}
@@ -64,4 +64,21 @@ public abstract class SearchProblem<State, Operator, costType> {
      */
 
     abstract costType stepCost(State s1, Operator a, State s2); // component 5
+
+    /**
+     * Generates every successor of a node with its step cost, in the order of actions(n). Problems that can
+     * share work between the successors of a state override it.
+     *
+     * @param n node to expand.
+     * @return the successors of n.
+     */
+    ArrayList<Successor<State, Operator, costType>> expand(Node<State, Operator> n)
+            throws IOException, ClassNotFoundException {
+        ArrayList<Successor<State, Operator, costType>> successors = new ArrayList<>();
+        for (Operator a : actions(n)) {
+            State s = result(n.getState(), a);
+            successors.add(new Successor<>(a, s, stepCost(n.getState(), a, s)));
+        }
+        return successors;
+    }
 }
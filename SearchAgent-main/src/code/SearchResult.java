@@ -0,0 +1,88 @@
+package code;
+
+/**
+ * The outcome of a search: how it ended, the goal node if one was found, and what the search spent getting
+ * there. Searches stopped by their budget report the statistics gathered until they stopped.
+ *
+ * @param <State>    state type
+ * @param <Operator> action type
+ */
+
+public class SearchResult<State, Operator> {
+
+    /**
+     * status: how the search ended.
+     * goal: the goal node found, null unless status is SOLVED. Anytime searches (ARA1, ARA2) stopped by their
+     * budget keep the best goal node they found before stopping.
+     * expandedNodes: nodes expanded, as reported by Helpers.solutionStr.
+     * peakFrontier: largest number of nodes the frontier held at once.
+     * visited: states the search remembered when it ended.
+     * reopenings: closed states put back in the open list, only counted by AS1 and AS2.
+     */
+
+    private SearchStatus _status;
+    private Node<State, Operator> _goal;
+    private int _expandedNodes;
+    private int _peakFrontier;
+    private int _visited;
+    private int _reopenings;
+
+    public SearchResult(SearchStatus status, Node<State, Operator> goal, int expandedNodes, int peakFrontier,
+                        int visited) {
+        _status = status;
+        _goal = goal;
+        _expandedNodes = expandedNodes;
+        _peakFrontier = peakFrontier;
+        _visited = visited;
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    public SearchStatus getStatus() {
+        return _status;
+    }
+
+    public void setStatus(SearchStatus status) {
+        _status = status;
+    }
+
+    public Node<State, Operator> getGoal() {
+        return _goal;
+    }
+
+    public void setGoal(Node<State, Operator> goal) {
+        _goal = goal;
+    }
+
+    public int getExpandedNodes() {
+        return _expandedNodes;
+    }
+
+    public void setExpandedNodes(int expandedNodes) {
+        _expandedNodes = expandedNodes;
+    }
+
+    public int getPeakFrontier() {
+        return _peakFrontier;
+    }
+
+    public void setPeakFrontier(int peakFrontier) {
+        _peakFrontier = peakFrontier;
+    }
+
+    public int getVisited() {
+        return _visited;
+    }
+
+    public void setVisited(int visited) {
+        _visited = visited;
+    }
+
+    public int getReopenings() {
+        return _reopenings;
+    }
+
+    public void setReopenings(int reopenings) {
+        _reopenings = reopenings;
+    }
+}
@@ -0,0 +1,62 @@
+package code;
+
+/**
+ * How a search ended.
+ */
+
+public enum SearchStatus {
+
+    /**
+     * A goal was found.
+     */
+    SOLVED,
+
+    /**
+     * Every reachable state was searched and none is a goal.
+     */
+    FAILED,
+
+    /**
+     * No goal was found within a depth or cost limit, but states beyond the limit were left unsearched.
+     */
+    CUTOFF,
+
+    /**
+     * No goal was found, but a beam search dropped nodes from its beam, any of which may have led to one.
+     */
+    BEAM_PRUNED,
+
+    /**
+     * The search expanded as many nodes as its budget allows.
+     */
+    EXPANSION_LIMIT,
+
+    /**
+     * The frontier grew past the size its budget allows.
+     */
+    FRONTIER_LIMIT,
+
+    /**
+     * The search remembered more states than its budget allows.
+     */
+    VISITED_LIMIT,
+
+    /**
+     * The deadline of the budget passed.
+     */
+    DEADLINE,
+
+    /**
+     * The cancellation token of the budget was cancelled.
+     */
+    CANCELLED;
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * @return true if the search was stopped by its budget rather than by running out of states
+     */
+    public boolean isBudgetExhausted() {
+        return this != SOLVED && this != FAILED && this != CUTOFF && this != BEAM_PRUNED;
+    }
+}
@@ -0,0 +1,18 @@
+package code;
+
+/**
+ * Receives the solutions of an anytime search (ARA1, ARA2) as soon as they are found, every one cheaper than
+ * the one before. It is called on the thread running the search, which waits for it to return.
+ */
+
+public interface SolutionListener {
+
+    /**
+     * @param goal          goal node of the solution. Helpers.solutionStr turns it into the plan, deaths and kills.
+     * @param expandedNodes nodes expanded so far
+     * @param bound         the solution has at most bound times the deaths of the best one, going by the fewest
+     *                      deaths of a path that could still lead to a cheaper one. 1 once no better solution is
+     *                      left.
+     */
+    void solutionFound(Node<MatrixState, MatrixOperator> goal, int expandedNodes, float bound);
+}
@@ -0,0 +1,223 @@
+package code;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Off-heap storage for the nodes of a matrix search. Every node is a fixed-size slot in a direct ByteBuffer
+ * holding the packed state (see MatrixStateEncoder), its hash, and the node fields, and nodes refer to each
+ * other by slot index. Memory per node is known up front and the garbage collector never sees the nodes, so
+ * searches that would run out of heap with Node and MatrixState objects can keep going.
+ * <p>
+ * The arena also acts as the visited set: a state is only stored if no equal state was stored before.
+ */
+
+public class StateArena {
+
+    private static final int SLOTS_PER_CHUNK = 1 << 14;
+    private static final int NO_ACTION = -1;
+
+    /**
+     * Slot layout, in bytes from the start of the slot:
+     * state: words() longs of the packed state.
+     * hash: Zobrist hash of the state.
+     * parent: slot of the parent node, -1 for the root.
+     * depth, deaths, kills: depth and path cost of the node.
+     * action: ordinal of the action that generated the node, -1 for the root.
+     */
+
+    private final MatrixStateEncoder _encoder;
+    private final int _words;
+    private final int _hashOffset;
+    private final int _parentOffset;
+    private final int _depthOffset;
+    private final int _deathsOffset;
+    private final int _killsOffset;
+    private final int _actionOffset;
+    private final int _slotBytes;
+
+    private final ArrayList<ByteBuffer> _chunks = new ArrayList<>();
+    private int _size;
+
+    /**
+     * table: open addressing index of the stored states, holding slot + 1 (0 is empty).
+     * scratch: the state being inserted, packed.
+     * probe: a stored state being compared against, packed.
+     */
+
+    private int[] _table;
+    private int _mask;
+    private final long[] _scratch;
+    private final long[] _probe;
+
+    public StateArena(MatrixStateEncoder encoder) {
+        _encoder = encoder;
+        _words = encoder.words();
+
+        _hashOffset = _words * 8;
+        _parentOffset = _hashOffset + 8;
+        _depthOffset = _parentOffset + 4;
+        _deathsOffset = _depthOffset + 4;
+        _killsOffset = _deathsOffset + 4;
+        _actionOffset = _killsOffset + 4;
+        _slotBytes = (_actionOffset + 4 + 7) & ~7;
+
+        _table = new int[1 << 10];
+        _mask = _table.length - 1;
+        _scratch = new long[_words];
+        _probe = new long[_words];
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    /**
+     * @return the number of nodes stored so far. Slots are numbered 0 to size() - 1 in insertion order.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * @return the number of bytes every node occupies
+     */
+    public int slotBytes() {
+        return _slotBytes;
+    }
+
+    public int getParent(int slot) {
+        return chunk(slot).getInt(offset(slot) + _parentOffset);
+    }
+
+    public int getDepth(int slot) {
+        return chunk(slot).getInt(offset(slot) + _depthOffset);
+    }
+
+    public int getDeaths(int slot) {
+        return chunk(slot).getInt(offset(slot) + _deathsOffset);
+    }
+
+    public int getKills(int slot) {
+        return chunk(slot).getInt(offset(slot) + _killsOffset);
+    }
+
+    /**
+     * @return the action that generated the node in slot, null for the root
+     */
+    public MatrixOperator getAction(int slot) {
+        int action = chunk(slot).getInt(offset(slot) + _actionOffset);
+        return action == NO_ACTION ? null : MatrixOperator.values()[action];
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Stores a node unless a node with an equal state was stored before.
+     *
+     * @param s      state of the node
+     * @param parent slot of the parent node, -1 for the root
+     * @param action action that generated the node, null for the root
+     * @param deaths path cost: hostages that died
+     * @param kills  path cost: agents killed
+     * @param depth  depth of the node
+     * @return the slot of the new node, or -1 if its state was already stored
+     */
+
+    public int add(MatrixState s, int parent, MatrixOperator action, int deaths, int kills, int depth) {
+        long hash = s.getHash();
+        int i = mix(hash) & _mask;
+        boolean packed = false;
+
+        while (_table[i] != 0) {
+            int other = _table[i] - 1;
+            if (chunk(other).getLong(offset(other) + _hashOffset) == hash) {
+                if (!packed) {
+                    _encoder.encode(s, _scratch, 0);
+                    packed = true;
+                }
+                readState(other, _probe);
+                if (_encoder.keyEquals(_scratch, 0, _probe, 0)) return -1;
+            }
+            i = (i + 1) & _mask;
+        }
+        if (!packed) _encoder.encode(s, _scratch, 0);
+
+        int slot = _size;
+        if (slot == _chunks.size() * SLOTS_PER_CHUNK) {
+            _chunks.add(ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * _slotBytes));
+        }
+
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        for (int w = 0; w < _words; w++) chunk.putLong(base + w * 8, _scratch[w]);
+        chunk.putLong(base + _hashOffset, hash);
+        chunk.putInt(base + _parentOffset, parent);
+        chunk.putInt(base + _depthOffset, depth);
+        chunk.putInt(base + _deathsOffset, deaths);
+        chunk.putInt(base + _killsOffset, kills);
+        chunk.putInt(base + _actionOffset, action == null ? NO_ACTION : action.ordinal());
+
+        _table[i] = slot + 1;
+        if (++_size * 2 > _table.length) grow();
+        return slot;
+    }
+
+    /**
+     * @return a new MatrixState equal to the state of the node in slot, hash included
+     */
+    public MatrixState getState(int slot) {
+        long[] words = new long[_words];
+        readState(slot, words);
+        MatrixState s = _encoder.decode(words, 0);
+        s.setHash(chunk(slot).getLong(offset(slot) + _hashOffset));
+        return s;
+    }
+
+    /**
+     * Rebuilds the path from the root to the node in slot as a chain of Nodes, so results can be reported
+     * the same way as for heap searches.
+     *
+     * @return the node of slot, whose ancestors lead back to the root
+     */
+    public Node<MatrixState, MatrixOperator> toNode(int slot) {
+        if (slot < 0) return null;
+
+        // collect the path first, since deep searches would overflow the stack with recursion
+        int[] path = new int[getDepth(slot) + 1];
+        for (int s = slot, i = path.length - 1; i >= 0; s = getParent(s), i--) path[i] = s;
+
+        Node<MatrixState, MatrixOperator> node = null;
+        for (int s : path) {
+            node = new Node<>(getState(s), node, getAction(s), getDeaths(s), getKills(s), 0, getDepth(s));
+        }
+        return node;
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return _chunks.get(slot / SLOTS_PER_CHUNK);
+    }
+
+    private int offset(int slot) {
+        return (slot % SLOTS_PER_CHUNK) * _slotBytes;
+    }
+
+    private void readState(int slot, long[] out) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        for (int w = 0; w < _words; w++) out[w] = chunk.getLong(base + w * 8);
+    }
+
+    private static int mix(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void grow() {
+        _table = new int[_table.length * 2];
+        _mask = _table.length - 1;
+
+        for (int slot = 0; slot < _size; slot++) {
+            int i = mix(chunk(slot).getLong(offset(slot) + _hashOffset)) & _mask;
+            while (_table[i] != 0) i = (i + 1) & _mask;
+            _table[i] = slot + 1;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package code;
+
+/**
+ * The duplicate detection of a search: remembers the states it was given and decides whether a new state
+ * is worth adding to the frontier.
+ *
+ * @param <State> state type
+ */
+
+public interface StateSet<State> {
+
+    /**
+     * Adds a state to the set.
+     *
+     * @param s state to add
+     * @return true if s is new to the set and should be searched, false if it should be discarded
+     */
+    boolean add(State s);
+
+    /**
+     * @return true if add(s) would discard s
+     */
+    boolean contains(State s);
+
+    /**
+     * @return the number of states stored
+     */
+    int size();
+}
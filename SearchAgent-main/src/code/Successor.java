@@ -0,0 +1,43 @@
+package code;
+
+/**
+ * One successor of a node, as generated by SearchProblem.expand: the action taken, the state it leads to, and
+ * what it costs.
+ *
+ * @param <State>    state type
+ * @param <Operator> action type
+ * @param <Cost>     step cost type of the problem
+ */
+
+public class Successor<State, Operator, Cost> {
+
+    /**
+     * action: action applied to the state of the expanded node.
+     * state: state the action leads to.
+     * stepCost: cost of the action, as SearchProblem.stepCost would give it.
+     */
+
+    private final Operator _action;
+    private final State _state;
+    private final Cost _stepCost;
+
+    public Successor(Operator action, State state, Cost stepCost) {
+        _action = action;
+        _state = state;
+        _stepCost = stepCost;
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    public Operator getAction() {
+        return _action;
+    }
+
+    public State getState() {
+        return _state;
+    }
+
+    public Cost getStepCost() {
+        return _stepCost;
+    }
+}
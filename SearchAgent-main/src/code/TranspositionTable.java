@@ -0,0 +1,197 @@
+package code;
+
+/**
+ * A bounded table of the states an iterative deepening search has reached. Every entry keeps two depths:
+ * the shallowest depth the state was reached at in the iteration that last reached it, and the shallowest
+ * depth it was reached at in any iteration. Entries carry the iteration that wrote them, so one table serves
+ * every iteration without being cleared.
+ * <p>
+ * The second depth is what earlier iterations pass on: a state reached deeper than it ever was is not on a
+ * shortest path, and the shortest paths to it are never pruned, so the iteration reaches it with more depth
+ * left anyway.
+ * <p>
+ * The table grows up to a maximum number of entries. After that, a state whose probe window is full
+ * overwrites an entry of an earlier iteration, or else the deepest entry of the window, which only ever
+ * costs re-expanding that state, never a wrong answer.
+ */
+
+public class TranspositionTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int PROBES = 8;
+
+    private final MatrixStateEncoder _encoder;
+    private final int _words;
+    private final int _maxCapacity;
+
+    /**
+     * keys: packed states, _words longs per slot.
+     * hashes: Zobrist hash of the state in each slot.
+     * depths: shallowest depth the state was reached at in iterations[slot].
+     * shallowest: shallowest depth the state was reached at in any iteration.
+     * iterations: iteration that last reached the state, 0 if the slot was never written.
+     * scratch: the state being looked up, packed.
+     */
+
+    private long[] _keys;
+    private long[] _hashes;
+    private int[] _depths;
+    private int[] _shallowest;
+    private int[] _iterations;
+    private int _mask;
+    private int _size;
+    private final long[] _scratch;
+
+    /**
+     * @param maxEntries the table stops growing once it has room for this many states
+     */
+    public TranspositionTable(MatrixStateEncoder encoder, int maxEntries) {
+        _encoder = encoder;
+        _words = encoder.words();
+        _maxCapacity = Integer.highestOneBit(Math.max(maxEntries, PROBES));
+        _scratch = new long[_words];
+        allocate(Math.min(INITIAL_CAPACITY, _maxCapacity));
+    }
+
+    // ==========================Getters-and-Setters==========================
+
+    /**
+     * @return the number of states the table remembers
+     */
+    public int size() {
+        return _size;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Records that s was reached at depth during an iteration, unless the iteration already reached s at
+     * the same depth or shallower, or any iteration reached it shallower. Either way everything below s has
+     * been or will be searched from a shallower or equal depth.
+     *
+     * @param iteration number of the current iteration, starting at 1
+     * @return true if s should be searched, false if it should be pruned
+     */
+    public boolean visit(MatrixState s, int depth, int iteration) {
+        long hash = s.getHash();
+        int start = mix(hash) & _mask;
+        int victim = -1;
+        boolean packed = false;
+
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & _mask;
+
+            // slots are never emptied, so s cannot be past a slot that was never written
+            if (_iterations[slot] == 0) {
+                if (victim < 0 || _iterations[victim] == iteration) victim = slot;
+                break;
+            }
+
+            if (_hashes[slot] == hash) {
+                if (!packed) {
+                    _encoder.encode(s, _scratch, 0);
+                    packed = true;
+                }
+                if (_encoder.keyEquals(_keys, slot * _words, _scratch, 0)) {
+                    if (_shallowest[slot] < depth) return false;
+                    if (_iterations[slot] == iteration && _depths[slot] <= depth) return false;
+                    _depths[slot] = depth;
+                    _shallowest[slot] = depth;
+                    _iterations[slot] = iteration;
+                    return true;
+                }
+            }
+
+            if (victim < 0 || (_iterations[victim] == iteration
+                    && (_iterations[slot] != iteration || _depths[slot] > _depths[victim]))) {
+                victim = slot;
+            }
+        }
+
+        if (_iterations[victim] == 0) {
+            if ((_size + 1) * 2 > _iterations.length && _iterations.length < _maxCapacity) {
+                grow();
+                return visit(s, depth, iteration);
+            }
+            _size++;
+        }
+        if (!packed) _encoder.encode(s, _scratch, 0);
+        System.arraycopy(_scratch, 0, _keys, victim * _words, _words);
+        _hashes[victim] = hash;
+        _depths[victim] = depth;
+        _shallowest[victim] = depth;
+        _iterations[victim] = iteration;
+        return true;
+    }
+
+    /**
+     * Tells what visit would answer, without recording anything.
+     *
+     * @return true if visit(s, depth, iteration) would prune s
+     */
+    public boolean prunes(MatrixState s, int depth, int iteration) {
+        long hash = s.getHash();
+        int start = mix(hash) & _mask;
+        boolean packed = false;
+
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & _mask;
+            if (_iterations[slot] == 0) return false;
+
+            if (_hashes[slot] == hash) {
+                if (!packed) {
+                    _encoder.encode(s, _scratch, 0);
+                    packed = true;
+                }
+                if (_encoder.keyEquals(_keys, slot * _words, _scratch, 0)) {
+                    return _shallowest[slot] < depth || (_iterations[slot] == iteration && _depths[slot] <= depth);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void allocate(int capacity) {
+        _keys = new long[capacity * _words];
+        _hashes = new long[capacity];
+        _depths = new int[capacity];
+        _shallowest = new int[capacity];
+        _iterations = new int[capacity];
+        _mask = capacity - 1;
+        _size = 0;
+    }
+
+    private static int mix(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * doubles the table.
+     */
+    private void grow() {
+        long[] oldKeys = _keys;
+        long[] oldHashes = _hashes;
+        int[] oldDepths = _depths;
+        int[] oldShallowest = _shallowest;
+        int[] oldIterations = _iterations;
+        allocate(oldIterations.length * 2);
+
+        for (int i = 0; i < oldIterations.length; i++) {
+            if (oldIterations[i] == 0) continue;
+
+            int start = mix(oldHashes[i]) & _mask;
+            int slot = -1;
+            for (int p = 0; p < PROBES && slot < 0; p++) {
+                if (_iterations[(start + p) & _mask] == 0) slot = (start + p) & _mask;
+            }
+            if (slot < 0) continue; // the window is full, drop the entry
+
+            System.arraycopy(oldKeys, i * _words, _keys, slot * _words, _words);
+            _hashes[slot] = oldHashes[i];
+            _depths[slot] = oldDepths[i];
+            _shallowest[slot] = oldShallowest[i];
+            _iterations[slot] = oldIterations[i];
+            _size++;
+        }
+    }
+}
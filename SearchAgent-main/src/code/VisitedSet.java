@@ -0,0 +1,130 @@
+package code;
+
+/**
+ * A set of visited matrix states backed by a single long array. States are stored in their packed form
+ * (see MatrixStateEncoder) in an open addressing table with linear probing, so the set never keeps a
+ * reference to a MatrixState, its hostages, or their locations. Slots are found with the Zobrist hash the
+ * state already carries, and a state is only packed when a slot with the same hash turns up or when it is
+ * inserted.
+ */
+
+public class VisitedSet implements StateSet<MatrixState> {
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+
+    private final MatrixStateEncoder _encoder;
+    private final int _words;
+
+    /**
+     * keys: packed states, _words longs per slot.
+     * hashes: Zobrist hash of the state in each slot.
+     * used: whether a slot holds a state.
+     * scratch: the state being looked up, packed.
+     */
+
+    private long[] _keys;
+    private long[] _hashes;
+    private boolean[] _used;
+    private int _mask;
+    private int _size;
+    private final long[] _scratch;
+    private boolean _scratchValid;
+
+    public VisitedSet(MatrixStateEncoder encoder) {
+        this(encoder, DEFAULT_CAPACITY);
+    }
+
+    public VisitedSet(MatrixStateEncoder encoder, int expectedSize) {
+        _encoder = encoder;
+        _words = encoder.words();
+        _scratch = new long[_words];
+
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1);
+        _keys = new long[capacity * _words];
+        _hashes = new long[capacity];
+        _used = new boolean[capacity];
+        _mask = capacity - 1;
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Adds a state to the set.
+     *
+     * @param s state to add
+     * @return true if the state was not already in the set
+     */
+
+    @Override
+    public boolean add(MatrixState s) {
+        int slot = find(s);
+        if (_used[slot]) return false;
+
+        if (!_scratchValid) _encoder.encode(s, _scratch, 0);
+        System.arraycopy(_scratch, 0, _keys, slot * _words, _words);
+        _hashes[slot] = s.getHash();
+        _used[slot] = true;
+        if (++_size * 2 > _used.length) grow();
+        return true;
+    }
+
+    @Override
+    public boolean contains(MatrixState s) {
+        return _used[find(s)];
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Looks s up. Leaves the packed form of s in the scratch buffer if it had to be computed.
+     *
+     * @return the slot holding s, or the empty slot where it would be inserted
+     */
+
+    private int find(MatrixState s) {
+        long hash = s.getHash();
+        int slot = mix(hash) & _mask;
+        _scratchValid = false;
+
+        while (_used[slot]) {
+            if (_hashes[slot] == hash) {
+                if (!_scratchValid) {
+                    _encoder.encode(s, _scratch, 0);
+                    _scratchValid = true;
+                }
+                if (_encoder.keyEquals(_keys, slot * _words, _scratch, 0)) break;
+            }
+            slot = (slot + 1) & _mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void grow() {
+        long[] oldKeys = _keys;
+        long[] oldHashes = _hashes;
+        boolean[] oldUsed = _used;
+
+        _keys = new long[oldKeys.length * 2];
+        _hashes = new long[oldHashes.length * 2];
+        _used = new boolean[oldUsed.length * 2];
+        _mask = _used.length - 1;
+
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i]) continue;
+
+            int slot = mix(oldHashes[i]) & _mask;
+            while (_used[slot]) slot = (slot + 1) & _mask;
+
+            System.arraycopy(oldKeys, i * _words, _keys, slot * _words, _words);
+            _hashes[slot] = oldHashes[i];
+            _used[slot] = true;
+        }
+    }
+}
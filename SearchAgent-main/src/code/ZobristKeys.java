@@ -0,0 +1,130 @@
+package code;
+
+import java.util.Random;
+
+/**
+ * Random 64-bit keys for Zobrist hashing of matrix states. The hash of a state is the XOR of the keys of
+ * every feature it has, so an operator only needs to XOR out the features it changes and XOR in the new
+ * ones. Features are the same ones MatrixState.equals looks at: Neo's cell, damage and capacity, each
+ * hostage's cell and dead/carried/removed flags, and the cells of alive agents and untaken pills.
+ */
+
+public class ZobristKeys {
+
+    private static final int MAX_NEO_DAMAGE = 255;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final GridLayout _layout;
+    private final long[] _neoCell;
+    private final long[] _neoDamage;
+    private final long[] _capacity;
+    private final long[][] _hostageCell; // [id][cell]
+    private final long[] _hostageDead;
+    private final long[] _hostageCarried;
+    private final long[] _hostageRemoved;
+    private final long[] _agent; // by cell
+    private final long[] _pill; // by cell
+
+    public ZobristKeys(MatrixState initial) {
+        _layout = initial.getLayout();
+        int cells = _layout.cells();
+        int hostages = initial.hostageCount();
+        Random random = new Random(SEED); // fixed seed keeps hashes, and so search order, reproducible
+
+        _neoCell = fill(random, cells);
+        _neoDamage = fill(random, MAX_NEO_DAMAGE + 1);
+        _capacity = fill(random, initial.getNeo().getOriginalCapacity() + 1);
+        _hostageCell = new long[hostages][];
+        for (int i = 0; i < hostages; i++) _hostageCell[i] = fill(random, cells);
+        _hostageDead = fill(random, hostages);
+        _hostageCarried = fill(random, hostages);
+        _hostageRemoved = fill(random, hostages);
+        _agent = fill(random, cells);
+        _pill = fill(random, cells);
+    }
+
+    // ==========================Keys==========================
+
+    public long neoCell(Location l) {
+        return _neoCell[cell(l)];
+    }
+
+    public long neoDamage(int damage) {
+        return _neoDamage[Math.max(0, Math.min(damage, MAX_NEO_DAMAGE))];
+    }
+
+    public long capacity(int capacity) {
+        return _capacity[capacity];
+    }
+
+    public long hostageCell(int id, int cell) {
+        return _hostageCell[id][cell];
+    }
+
+    public long hostageDead(int id) {
+        return _hostageDead[id];
+    }
+
+    public long hostageCarried(int id) {
+        return _hostageCarried[id];
+    }
+
+    /**
+     * @return the key to XOR in when a killed turned hostage leaves s, which also XORs out every
+     * other feature the hostage still has in s
+     */
+    public long hostageRemoved(MatrixState s, int id) {
+        return _hostageRemoved[id] ^ hostage(s, id);
+    }
+
+    public long agent(Location l) {
+        return _agent[cell(l)];
+    }
+
+    public long pill(Location l) {
+        return _pill[cell(l)];
+    }
+
+    // ============================Additional-Methods===========================
+
+    /**
+     * Computes the hash of a state from scratch. Use it for the initial state; successors should be
+     * updated incrementally.
+     *
+     * @param s state to hash
+     * @return XOR of the keys of all features of s
+     */
+
+    public long hash(MatrixState s) {
+        long hash = neoCell(s.getNeo().getLocation()) ^ neoDamage(s.getNeo().getDamage())
+                ^ capacity(s.getNeo().getCurrentCapacity());
+
+        for (int id = 0; id < _hostageRemoved.length; id++) {
+            hash ^= s.getHostageRemoved()[id] ? _hostageRemoved[id] : hostage(s, id);
+        }
+
+        long[] agents = s.getAgents();
+        for (int c = Bitboard.next(agents, 0); c >= 0; c = Bitboard.next(agents, c + 1)) hash ^= _agent[c];
+        long[] pills = s.getPills();
+        for (int c = Bitboard.next(pills, 0); c >= 0; c = Bitboard.next(pills, c + 1)) hash ^= _pill[c];
+
+        return hash;
+    }
+
+    private long hostage(MatrixState s, int id) {
+        long hash = _hostageCell[id][s.getHostageCells()[id]];
+        if (!s.isHostageAlive(id)) hash ^= _hostageDead[id];
+        if (s.getHostageCarried()[id]) hash ^= _hostageCarried[id];
+        return hash;
+    }
+
+    private int cell(Location l) {
+        return _layout.cell(l);
+    }
+
+    private static long[] fill(Random random, int n) {
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) keys[i] = random.nextLong();
+        return keys;
+    }
+}
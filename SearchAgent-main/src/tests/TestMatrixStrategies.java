@@ -0,0 +1,519 @@
+package tests;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import code.CancellationToken;
+import code.Helpers;
+import code.Matrix;
+import code.MatrixOperator;
+import code.Node;
+import code.MatrixState;
+import code.Search;
+import code.SearchOptions;
+import code.SearchResult;
+import code.SearchStatus;
+import code.Successor;
+import code.TranspositionTable;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+
+public class TestMatrixStrategies {
+
+	String grid0 = "5,5;2;3,4;1,2;0,3,1,4;2,3;4,4,0,2,0,2,4,4;2,2,91,2,4,62";
+	String grid2 = "5,5;2;3,2;0,1;4,1;0,3;1,2,4,2,4,2,1,2,0,4,3,0,3,0,0,4;1,1,77,3,4,34";
+	String grid5 = "5,5;2;0,4;3,4;3,1,1,1;2,3;3,0,0,1,0,1,3,0;4,2,54,4,0,85,1,0,43";
+	String grid10 = "5,5;4;1,1;4,1;2,4,0,4,3,2,3,0,4,2,0,1,1,3,2,1;4,0,4,4,1,0;2,0,0,2,0,2,2,0;0,0,62,4,3,45,3,3,39,2,3,40";
+	String gridTies = "4,6;3;3,5;2,1;0,5,3,2,1,3;;;1,2,78,0,2,29";
+	String gridReopen = "4,4;2;0,3;2,1;2,3;2,0;;0,1,88,1,3,90,1,0,90";
+	String gridHurt = "4,5;1;2,3;2,1;;2,0;;1,4,46,1,2,92,2,4,77";
+	String gridFreeMoves0 = "5,5;1;2,1;0,4;1,4,1,1;;;2,0,6,4,3,32,2,2,12";
+	String gridFreeMoves1 = "4,5;2;1,0;3,3;;;;2,3,39,2,2,86,2,0,28";
+	String gridUnsolvable0 = "1,7;1;0,0;0,6;0,1,0,2,0,3,0,4,0,5;;;0,0,1";
+	String gridUnsolvable1 = "1,8;1;0,0;0,7;0,2,0,3,0,4,0,5,0,6;;;0,1,99";
+	String gridOverestimate = "3,3;3;2,0;1,1;2,2;0,2;;1,2,29,0,0,90,0,1,96";
+
+	@Test(timeout = 10000)
+	public void testZobrist0() throws Exception {
+		Random random = new Random(1);
+		for (String grid : new String[]{grid0, grid2, grid5, grid10, gridTies, gridHurt}) {
+			Matrix problem = new Matrix(Helpers.parseGrid(grid));
+			Node<MatrixState, MatrixOperator> node = new Node<>(problem.getInitialState(), null, null, 0, 0, 0, 0);
+			for (int step = 0; step < 500; step++) {
+				MatrixState s = node.getState();
+				assertEquals("The incremental hash should match the hash from scratch.", problem.getZobrist().hash(s),
+						s.getHash());
+
+				ArrayList<MatrixOperator> actions = problem.actions(node);
+				if (actions.isEmpty()) { // dead end, walk again from the start
+					node = new Node<>(problem.getInitialState(), null, null, 0, 0, 0, 0);
+					continue;
+				}
+				MatrixOperator a = actions.get(random.nextInt(actions.size()));
+				node = new Node<>(problem.result(s, a), node, a, 0, 0, 0, node.getDepth() + 1);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testExpand0() throws Exception {
+		Random random = new Random(1);
+		for (String grid : new String[]{grid0, grid2, grid5, grid10, gridTies, gridHurt}) {
+			Matrix problem = new Matrix(Helpers.parseGrid(grid));
+			Node<MatrixState, MatrixOperator> node = new Node<>(problem.getInitialState(), null, null, 0, 0, 0, 0);
+			for (int step = 0; step < 500; step++) {
+				MatrixState s = node.getState();
+				ArrayList<MatrixOperator> actions = problem.actions(node);
+				ArrayList<Successor<MatrixState, MatrixOperator, int[]>> successors = problem.expand(node);
+				assertEquals("There should be one successor per action.", actions.size(), successors.size());
+				for (int i = 0; i < actions.size(); i++) {
+					Successor<MatrixState, MatrixOperator, int[]> next = successors.get(i);
+					MatrixState expected = problem.result(s, actions.get(i));
+					assertEquals("The successors should follow the actions.", actions.get(i), next.getAction());
+					assertEquals("The successor should be the result of its action.", expected, next.getState());
+					assertEquals("The successor should have the hash of the result.", expected.getHash(),
+							next.getState().getHash());
+					assertTrue("The successor should hurt the hostages like the result.",
+							Arrays.equals(expected.getHostageDamage(), next.getState().getHostageDamage()));
+					assertTrue("The successor should cost what stepCost says.",
+							Arrays.equals(problem.stepCost(s, actions.get(i), expected), next.getStepCost()));
+				}
+
+				if (actions.isEmpty()) { // dead end, walk again from the start
+					node = new Node<>(problem.getInitialState(), null, null, 0, 0, 0, 0);
+					continue;
+				}
+				int i = random.nextInt(actions.size());
+				node = new Node<>(successors.get(i).getState(), node, actions.get(i), 0, 0, 0, node.getDepth() + 1);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testArena0() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setUseArena(true);
+		for (String grid : new String[]{grid2, gridTies}) {
+			for (String strategy : new String[]{"BF", "DF"}) {
+				String solution = Matrix.solve(grid, strategy, false, options);
+				assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+				assertEquals("The arena should find the plan the heap nodes find.", Matrix.solve(grid, strategy, false),
+						solution);
+			}
+			String solution = Matrix.solve(grid, "UC", false, options);
+			assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+			assertEquals("UC in the arena should find the fewest deaths.", Matrix.solve(grid, "UC", false).split(";")[1],
+					solution.split(";")[1]);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testDominance0() throws Exception {
+		for (boolean replace : new boolean[]{false, true}) {
+			SearchOptions options = new SearchOptions();
+			options.setDominance(true);
+			options.setReplaceDominated(replace);
+			for (String grid : new String[]{grid2, gridTies}) {
+				String solution = Matrix.solve(grid, "BF", false, options);
+				assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+				assertEquals("BF with dominance should find a plan as short as BF does.",
+						Matrix.solve(grid, "BF", false).split(";")[0].split(",").length,
+						solution.split(";")[0].split(",").length);
+				for (String strategy : new String[]{"UC", "AS1", "AS2"}) {
+					solution = Matrix.solve(grid, strategy, false, options);
+					assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+					assertEquals("Dominance should keep the fewest deaths.", Matrix.solve(grid, "UC", false).split(";")[1],
+							solution.split(";")[1]);
+				}
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testBucket0() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setBucketQueue(true);
+		for (String grid : new String[]{grid10, gridTies}) {
+			for (String strategy : new String[]{"UC", "AS1", "AS2"}) {
+				String solution = Matrix.solve(grid, strategy, false, options);
+				assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+				assertEquals("The bucket queue should find the fewest deaths.",
+						Matrix.solve(grid, "UC", false).split(";")[1], solution.split(";")[1]);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testReopen0() throws Exception {
+		SearchResult<MatrixState, MatrixOperator> result = Search.searchProcedure(new Matrix(Helpers.parseGrid(gridReopen)),
+				"AS1", new SearchOptions());
+		String solution = Helpers.solutionStr(result.getGoal(), result.getExpandedNodes());
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(gridReopen, solution));
+		assertEquals("A cheaper path to an expanded state should reopen it.", 1, result.getReopenings());
+		assertEquals("Reopening should keep the fewest deaths.", Matrix.solve(gridReopen, "UC", false).split(";")[1],
+				solution.split(";")[1]);
+	}
+
+	@Test(timeout = 10000)
+	public void testIDA0() throws Exception {
+		for (String grid : new String[]{grid0, grid2, gridTies}) {
+			for (String strategy : new String[]{"IDA1", "IDA2"}) {
+				String solution = Matrix.solve(grid, strategy, false);
+				assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+				assertEquals("IDA* should find the fewest deaths here.", Matrix.solve(grid, "UC", false).split(";")[1],
+						solution.split(";")[1]);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testIDA1() throws Exception {
+		for (String grid : new String[]{gridFreeMoves0, gridFreeMoves1}) {
+			for (String strategy : new String[]{"IDA1", "IDA2"}) {
+				String solution = Matrix.solve(grid, strategy, false);
+				assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+				assertEquals("IDA* should find the fewest deaths.", Matrix.solve(grid, "UC", false).split(";")[1],
+						solution.split(";")[1]);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testTransposition0() throws Exception {
+		for (int entries : new int[]{1 << 20, 64}) {
+			SearchOptions options = new SearchOptions();
+			options.setTranspositionTableSize(entries);
+			for (String grid : new String[]{grid0, gridTies}) {
+				String solution = Matrix.solve(grid, "ID", false, options);
+				assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+				assertEquals("ID should find a plan as short as BF does, even with a full table.",
+						Matrix.solve(grid, "BF", false).split(";")[0].split(",").length,
+						solution.split(";")[0].split(",").length);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testTransposition1() throws Exception {
+		Matrix problem = new Matrix(Helpers.parseGrid(grid10));
+		MatrixState s = problem.getInitialState();
+		Node<MatrixState, MatrixOperator> root = new Node<>(s, null, null, 0, 0, 0, 0);
+		MatrixState child = problem.result(s, problem.actions(root).get(0));
+		TranspositionTable table = new TranspositionTable(problem.getEncoder(), 64);
+		assertFalse("An unknown state should not be pruned.", table.prunes(s, 0, 1));
+		assertTrue("Asking should not record the state.", table.visit(s, 0, 1));
+		assertTrue("A state reached again at the same depth should be pruned.", table.prunes(s, 0, 1));
+		assertTrue("A state reached again deeper should be pruned.", table.prunes(s, 1, 2));
+		assertFalse("A state reached again as shallow in a new iteration should not be pruned.", table.prunes(s, 0, 2));
+		assertFalse("An unknown state should not be pruned.", table.prunes(child, 1, 1));
+	}
+
+	@Test(timeout = 10000)
+	public void testBFP0() throws Exception {
+		String solution = Matrix.solve(grid0, "BFP", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid0, solution));
+		assertEquals("BFP should find the plan BF finds.", Matrix.solve(grid0, "BF", false), solution);
+	}
+
+	@Test(timeout = 10000)
+	public void testBFP2() throws Exception {
+		String solution = Matrix.solve(grid2, "BFP", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid2, solution));
+		assertEquals("BFP should find the plan BF finds.", Matrix.solve(grid2, "BF", false), solution);
+	}
+
+	@Test(timeout = 10000)
+	public void testBFP5() throws Exception {
+		String solution = Matrix.solve(grid5, "BFP", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid5, solution));
+		assertEquals("BFP should find the plan BF finds.", Matrix.solve(grid5, "BF", false), solution);
+	}
+
+	@Test(timeout = 10000)
+	public void testBFP10() throws Exception {
+		String solution = Matrix.solve(grid10, "BFP", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+		assertEquals("BFP should find the plan BF finds.", Matrix.solve(grid10, "BF", false), solution);
+	}
+
+	@Test(timeout = 10000)
+	public void testHDA0() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setParallelism(4);
+		String solution = Matrix.solve(grid10, "UCP", false, options);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+	}
+
+	@Test(timeout = 10000)
+	public void testHDA1() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setParallelism(4);
+		String solution = Matrix.solve(grid10, "AS1P", false, options);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+		assertEquals("HDA* should find the fewest deaths.", Matrix.solve(grid10, "UC", false).split(";")[1],
+				solution.split(";")[1]);
+	}
+
+	@Test(timeout = 10000)
+	public void testHDA2() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setParallelism(4);
+		String solution = Matrix.solve(grid10, "AS2P", false, options);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+		assertEquals("HDA* should find the fewest deaths.", Matrix.solve(grid10, "UC", false).split(";")[1],
+				solution.split(";")[1]);
+	}
+
+	@Test(timeout = 10000)
+	public void testHDA3() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setParallelism(4);
+		options.getBudget().setMaxExpansions(50);
+		SearchResult<MatrixState, MatrixOperator> result = Search.searchProcedure(new Matrix(Helpers.parseGrid(grid10)),
+				"UCP", options);
+		assertEquals("The search should run out of expansions.", SearchStatus.EXPANSION_LIMIT, result.getStatus());
+		assertTrue("The workers together should not expand more than the limit.", result.getExpandedNodes() <= 50);
+	}
+
+	@Test(timeout = 10000)
+	public void testPortfolio0() throws Exception {
+		String solution = Matrix.solve(grid10, "PORTFOLIO", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+	}
+
+	@Test(timeout = 10000)
+	public void testPortfolio1() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setPortfolioDeadline(2000);
+		String solution = Matrix.solve(grid10, "PORTFOLIO", false, options);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+	}
+
+	@Test(timeout = 10000)
+	public void testPortfolio2() throws Exception {
+		SearchOptions options = new SearchOptions();
+		CancellationToken cancellation = new CancellationToken();
+		cancellation.cancel();
+		options.getBudget().setCancellation(cancellation);
+		assertEquals("A cancelled search should return no solution.", "No Solution",
+				Matrix.solve(grid10, "PORTFOLIO", false, options));
+	}
+
+	@Test(timeout = 10000)
+	public void testPortfolio3() throws Exception {
+		// BFE throws, since its scratch directory is a file
+		File file = Files.createTempFile("bfe", null).toFile();
+		try {
+			SearchOptions options = new SearchOptions();
+			options.setExternalDirectory(file.getPath());
+			options.setPortfolio(new String[]{"BFE", "BF"});
+			String solution = Matrix.solve(grid10, "PORTFOLIO", false, options);
+			assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+
+			options.setPortfolio(new String[]{"BFE"});
+			try {
+				Matrix.solve(grid10, "PORTFOLIO", false, options);
+				fail("A portfolio whose strategies all threw should throw.");
+			} catch (IOException e) {
+				// expected
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testBudget0() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.getBudget().setMaxExpansions(10);
+		assertEquals("A search out of expansions should return no solution.", "No Solution",
+				Matrix.solve(grid10, "BF", false, options));
+	}
+
+	@Test(timeout = 10000)
+	public void testARA1() throws Exception {
+		SearchOptions options = new SearchOptions();
+		StringBuilder published = new StringBuilder();
+		int[] lastDeaths = new int[]{Integer.MAX_VALUE};
+		options.setSolutionListener((goal, expandedNodes, bound) -> {
+			assertTrue("Every solution should have at most the deaths of the one before.",
+					goal.getDeaths() <= lastDeaths[0]);
+			assertTrue("The bound should not be below 1.", bound >= 1);
+			lastDeaths[0] = goal.getDeaths();
+			published.setLength(0);
+			published.append(Helpers.solutionStr(goal, expandedNodes));
+		});
+		String solution = Matrix.solve(grid10, "ARA1", false, options);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+		assertEquals("The last solution published should be the one returned.",
+				published.substring(0, published.lastIndexOf(";")), solution.substring(0, solution.lastIndexOf(";")));
+	}
+
+	@Test(timeout = 10000)
+	public void testARA2() throws Exception {
+		String solution = Matrix.solve(grid10, "ARA2", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+	}
+
+	@Test(timeout = 10000)
+	public void testARA3() throws Exception {
+		SearchOptions options = new SearchOptions();
+		float[] lastBound = new float[1];
+		options.setSolutionListener((goal, expandedNodes, bound) -> lastBound[0] = bound);
+		String optimal = Matrix.solve(gridOverestimate, "UC", false);
+		for (String strategy : new String[]{"ARA1", "ARA2"}) {
+			String solution = Matrix.solve(gridOverestimate, strategy, false, options);
+			assertTrue("The output actions do not lead to a goal state.",
+					TestMatrixPublic.applyPlan(gridOverestimate, solution));
+			assertEquals("ARA* should end on the fewest deaths.", optimal.split(";")[1], solution.split(";")[1]);
+			assertEquals("ARA* should end on the fewest kills.", optimal.split(";")[2], solution.split(";")[2]);
+			assertTrue("The last solution should be published with bound 1.", lastBound[0] == 1);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testFocal0() throws Exception {
+		for (String grid : new String[]{grid10, gridReopen, gridFreeMoves1}) {
+			int optimal = Integer.parseInt(Matrix.solve(grid, "UC", false).split(";")[1]);
+			for (String strategy : new String[]{"AE1-1.5", "AE2-1.5"}) {
+				String solution = Matrix.solve(grid, strategy, false);
+				assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+				assertTrue("The deaths should be at most 1.5 times the fewest.",
+						Integer.parseInt(solution.split(";")[1]) <= 1.5 * optimal);
+			}
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testFocal1() throws Exception {
+		String solution = Matrix.solve(grid10, "AE2-1", false);
+		String optimal = Matrix.solve(grid10, "UC", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+		assertEquals("With w = 1 the deaths should be the fewest possible.", optimal.split(";")[1], solution.split(";")[1]);
+	}
+
+	@Test(timeout = 10000)
+	public void testBeam1() throws Exception {
+		String solution = Matrix.solve(grid10, "BM1", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+	}
+
+	@Test(timeout = 10000)
+	public void testBeam2() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setBeamWidth(16);
+		String solution = Matrix.solve(grid10, "BM2", false, options);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+	}
+
+	@Test(timeout = 10000)
+	public void testBeam3() throws Exception {
+		for (String strategy : new String[]{"BM1", "BM2"}) {
+			SearchOptions options = new SearchOptions();
+			options.setBeamWidth(1);
+			assertEquals("A beam that dropped new states should report it.", SearchStatus.BEAM_PRUNED,
+					Search.searchProcedure(new Matrix(Helpers.parseGrid(gridUnsolvable0)), strategy, options).getStatus());
+			assertEquals("A beam that dropped no new state should fail.", SearchStatus.FAILED,
+					Search.searchProcedure(new Matrix(Helpers.parseGrid(gridUnsolvable1)), strategy, options).getStatus());
+
+			options.setBeamWidth(256);
+			assertEquals("A beam wide enough for every layer should fail.", SearchStatus.FAILED,
+					Search.searchProcedure(new Matrix(Helpers.parseGrid(gridUnsolvable0)), strategy, options).getStatus());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testMacro0() throws Exception {
+		SearchOptions options = new SearchOptions();
+		options.setMacroOperators(true);
+		String solution = Matrix.solve(grid10, "UC", false, options);
+		String optimal = Matrix.solve(grid10, "UC", false);
+		assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+		assertEquals("The macro plan should have the fewest deaths here.", optimal.split(";")[1], solution.split(";")[1]);
+	}
+
+	@Test(timeout = 10000)
+	public void testHeuristic3() throws Exception {
+		for (String grid : new String[]{grid10, gridHurt}) {
+			String solution = Matrix.solve(grid, "AS3", false);
+			String optimal = Matrix.solve(grid, "UC", false);
+			assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid, solution));
+			assertEquals("AS3 should find the fewest deaths.", optimal.split(";")[1], solution.split(";")[1]);
+		}
+		assertTrue("The output actions do not lead to a goal state.",
+				TestMatrixPublic.applyPlan(grid10, Matrix.solve(grid10, "GR3", false)));
+	}
+
+	@Test(timeout = 10000)
+	public void testExternal0() throws Exception {
+		File directory = Files.createTempDirectory("bfe").toFile();
+		try {
+			SearchOptions options = new SearchOptions();
+			options.setExternalDirectory(directory.getPath());
+			options.setExternalRunSize(64);
+			String solution = Matrix.solve(grid10, "BFE", false, options);
+			String bf = Matrix.solve(grid10, "BF", false);
+			assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+			assertEquals("BFE should find a plan as short as BF does.", bf.split(";")[0].split(",").length,
+					solution.split(";")[0].split(",").length);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testExternal1() throws Exception {
+		File directory = Files.createTempDirectory("bfe").toFile();
+		try {
+			SearchOptions options = new SearchOptions();
+			options.setExternalDirectory(directory.getPath());
+			options.getBudget().setMaxExpansions(50);
+			assertEquals("A search out of expansions should return no solution.", "No Solution",
+					Matrix.solve(grid10, "BFE", false, options));
+			assertTrue("A stopped search should keep its layers.", directory.list().length > 0);
+
+			options.getBudget().setMaxExpansions(Long.MAX_VALUE);
+			String solution = Matrix.solve(grid10, "BFE", false, options);
+			assertTrue("The output actions do not lead to a goal state.", TestMatrixPublic.applyPlan(grid10, solution));
+			assertEquals("A finished search should delete its layers.", 0, directory.list().length);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testExternal2() throws Exception {
+		File directory = Files.createTempDirectory("bfe").toFile();
+		try {
+			SearchOptions options = new SearchOptions();
+			options.setExternalDirectory(directory.getPath());
+			String solution = Matrix.solve(grid5, "BFE", false, options);
+
+			// runs of two records take several merge passes per layer
+			options.setExternalRunSize(2);
+			assertEquals("The plan should not depend on the run size.", solution, Matrix.solve(grid5, "BFE", false, options));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	/**
+	 * Deletes file, and everything in it if it is a directory.
+	 */
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) delete(child);
+		}
+		file.delete();
+	}
+}